@@ -0,0 +1,81 @@
+package apps;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import structures.Trie;
+
+/**
+ * completionList latency over a trie of the dictionary's words, cycling through one
+ * prefix per word (of the first 1000): its first character (long lists), all of it but
+ * the last character (short lists), and that followed by a character no word has (a miss
+ * after walking down the whole word).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Thread)
+public class TrieCompletionBenchmark {
+
+	private Trie trie;
+	private String[] shortPrefixes, longPrefixes, missingPrefixes;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void build(TrieDictionary dictionary) {
+		trie = new Trie();
+		for (String word : dictionary.words) {
+			trie.insertWord(word);
+		}
+
+		int count = Math.min(dictionary.words.size(), 1000);
+		shortPrefixes = new String[count];
+		longPrefixes = new String[count];
+		missingPrefixes = new String[count];
+		for (int i=0; i < count; i++) {
+			String word = dictionary.words.get(i);
+			shortPrefixes[i] = word.substring(0, 1);
+			longPrefixes[i] = word.substring(0, word.length()-1);
+			missingPrefixes[i] = word.substring(0, word.length()-1) + "#";
+		}
+	}
+
+	@Benchmark
+	public ArrayList<String> completionListShort() {
+		return trie.completionList(shortPrefixes[next()]);
+	}
+
+	@Benchmark
+	public ArrayList<String> completionListLong() {
+		return trie.completionList(longPrefixes[next()]);
+	}
+
+	@Benchmark
+	public ArrayList<String> completionListMissing() {
+		return trie.completionList(missingPrefixes[next()]);
+	}
+
+	/**
+	 * Returns the index of the next prefix, going back to the first after the last.
+	 */
+	private int next() {
+		int i = next;
+		next = (i + 1 == shortPrefixes.length) ? 0 : i + 1;
+		return i;
+	}
+
+}
@@ -0,0 +1,52 @@
+package apps;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Words a benchmark runs over, picked by the dictionary and size parameters:
+ * - testcases: the words of the "Test Cases/words*.txt" files as they are (size is not used)
+ * - synthetic: the synthetic words of TrieBenchmark, scaled up to size
+ * shuffled in the same order every time.
+ *
+ * The test cases are read from ../Test Cases, i.e. next to this module's directory, which
+ * benchmarks are run from; the trie.testCases system property (passed to the forked JVMs
+ * with -jvmArgsAppend) gives another directory.
+ */
+@State(Scope.Benchmark)
+public class TrieDictionary {
+
+	@Param({"testcases", "synthetic"})
+	public String dictionary;
+
+	@Param({"10000", "100000", "1000000"})
+	public int size;
+
+	/**
+	 * Words of the dictionary, shuffled.
+	 */
+	ArrayList<String> words;
+
+	@Setup(Level.Trial)
+	public void load()
+	throws IOException {
+		ArrayList<String> base = TrieBenchmark.getBaseWords(System.getProperty("trie.testCases", "../Test Cases"));
+		if (dictionary.equals("testcases")) {
+			words = base;
+		} else if (dictionary.equals("synthetic")) {
+			words = TrieBenchmark.syntheticWords(base, size);
+		} else {
+			throw new IllegalArgumentException("No such dictionary: " + dictionary);
+		}
+		Collections.shuffle(words, new Random(42));
+	}
+
+}
@@ -0,0 +1,34 @@
+package apps;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import structures.Trie;
+
+/**
+ * insertWord: time to load all the dictionary's words into an empty trie.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx3g")
+public class TrieInsertBenchmark {
+
+	@Benchmark
+	public Trie insertWord(TrieDictionary dictionary) {
+		Trie trie = new Trie();
+		for (String word : dictionary.words) {
+			trie.insertWord(word);
+		}
+		return trie;
+	}
+
+}
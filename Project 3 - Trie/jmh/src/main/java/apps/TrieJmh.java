@@ -0,0 +1,34 @@
+package apps;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of structures.Trie (TrieCompletionBenchmark and
+ * TrieInsertBenchmark), as JMH's own main does, except that the results are written as
+ * JSON to target/trie-benchmark.json unless -rf or -rff say otherwise, so that runs of two
+ * versions can be compared with JMH's tools. The heap a trie retains per word is not a
+ * timing, and is measured by TrieBenchmark (benchmarkFootprint).
+ *
+ * Usage: java -jar target/benchmarks.jar [JMH options]
+ */
+public class TrieJmh {
+
+	public static void main(String[] args)
+	throws CommandLineOptionException, RunnerException {
+
+		CommandLineOptions command = new CommandLineOptions(args);
+		Options options = new OptionsBuilder()
+				.parent(command)
+				.resultFormat(command.getResultFormat().orElse(ResultFormatType.JSON))
+				.result(command.getResult().orElse("target/trie-benchmark.json"))
+				.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,1307 @@
+package apps;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import structures.ConcurrentTrie;
+import structures.Dawg;
+import structures.FrozenTrie;
+import structures.PackedTrie;
+import structures.SuffixIndex;
+import structures.Trie;
+import structures.TrieMetrics;
+import structures.TrieSnapshot;
+import structures.TrieStats;
+
+public class TrieBenchmark {
+
+	static String testCasesDir = "Test Cases";
+	static int[] sizes = {10000, 100000, 1000000};
+
+	/**
+	 * Times checkMissAllocation measures the lookups before failing.
+	 */
+	static final int MISS_ROUNDS = 5;
+
+	public static void main(String[] args)
+	throws IOException, InterruptedException {
+
+		if (args.length > 0) {
+			testCasesDir = args[0];
+		}
+		if (args.length > 1) {
+			sizes = new int[args.length-1];
+			for (int i=1; i < args.length; i++) {
+				sizes[i-1] = Integer.parseInt(args[i]);
+			}
+		}
+
+		ArrayList<String> base = getBaseWords(testCasesDir);
+		System.out.println(base.size() + " base words from " + testCasesDir);
+		benchmarkFreeze(base);
+
+		for (int size : sizes) {
+			ArrayList<String> words = syntheticWords(base, size);
+			benchmarkLoad(words);
+			benchmarkFootprint(words);
+			benchmarkPackedLoad(words);
+			benchmarkBulkBuild(words);
+			benchmarkParallelBuild(words);
+			benchmarkSnapshot(words);
+			benchmarkCache(words);
+			benchmarkChurn(words);
+			benchmarkFuzzy(words);
+			benchmarkCount(words);
+			benchmarkRange(words);
+			benchmarkFreeze(words);
+			benchmarkDawg(words);
+			benchmarkSuffixIndex(words);
+			benchmarkMatch(words);
+			benchmarkPrefixes(words);
+			benchmarkInstrumentation(words);
+			benchmarkOffHeapWords(words);
+		}
+
+		for (int alphabet : new int[] {26, 256, 4096}) {
+			benchmarkFanOut(alphabet);
+		}
+
+		benchmarkWideNode();
+
+		ArrayList<String> words = syntheticWords(base, sizes[0]);
+		for (int readers : new int[] {1, 2, 4}) {
+			stressConcurrentReads(words, readers);
+		}
+
+		words = syntheticWords(base, sizes[sizes.length-1]);
+		for (int writers : new int[] {1, 2, 4}) {
+			benchmarkConcurrentInserts(words, writers);
+		}
+
+	}
+
+	/**
+	 * Times insertWord over the given words, then times inserting all of them again
+	 * (every word a duplicate).
+	 */
+	private static void benchmarkLoad(ArrayList<String> words) {
+		Trie trie = new Trie();
+		long start = System.nanoTime();
+		for (String word : words) {
+			trie.insertWord(word);
+		}
+		long load = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (String word : words) {
+			trie.insertWord(word);
+		}
+		long reload = System.nanoTime() - start;
+
+		System.out.printf("load %,d words: %,d ms (%,d ns/word), duplicates: %,d ms%n",
+				words.size(), load/1000000, load/words.size(), reload/1000000);
+
+		checkMissAllocation(trie, words.get(0));
+		checkLimits(trie, words.get(0));
+	}
+
+	/**
+	 * Measures the heap a trie retains per word: heap in use after inserting the words, less
+	 * heap in use before, after full collections. Counts the nodes, word registry and child
+	 * indexes, and the words themselves: each word is inserted as a new String that only the
+	 * trie holds on to.
+	 */
+	private static void benchmarkFootprint(ArrayList<String> words) {
+		long before = usedHeap();
+		Trie trie = new Trie();
+		for (String word : words) {
+			trie.insertWord(new String(word));
+		}
+		long retained = usedHeap() - before;
+
+		System.out.printf("footprint %,d words: %,d KB retained, %.1f bytes/word (%,d nodes)%n",
+				words.size(), retained/1024, (double)retained / words.size(), trie.stats().nodes());
+	}
+
+	/**
+	 * Measures the bytes allocated by completionList for prefixes that are not in the trie,
+	 * which should be zero: a miss only compares characters in place. The lookups are
+	 * measured up to MISS_ROUNDS times, since the JIT may still be compiling the loop in the
+	 * first rounds (and deoptimizing allocates), and the check fails if none of them
+	 * allocated nothing.
+	 */
+	private static void checkMissAllocation(Trie trie, String word) {
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+
+		// misses at the first character, and after matching the whole word but one character
+		String[] misses = {"#", word.substring(0, word.length()-1) + "#"};
+		int lookups = 100000;
+		for (String miss : misses) {
+			for (int i=0; i < lookups; i++) {
+				trie.completionList(miss); //warm up
+			}
+			long allocated = 0;
+			int round = 0;
+			do {
+				long before = threads.getThreadAllocatedBytes(thread);
+				for (int i=0; i < lookups; i++) {
+					if (trie.completionList(miss) != null) {
+						throw new IllegalStateException("not a miss: " + miss);
+					}
+				}
+				allocated = threads.getThreadAllocatedBytes(thread) - before;
+				round++;
+			} while (allocated > 0 && round < MISS_ROUNDS);
+			System.out.printf("miss \"%s\": %,d bytes allocated over %,d lookups (round %d)%n",
+					miss, allocated, lookups, round);
+			if (allocated > 0) {
+				throw new IllegalStateException("completionList allocated " + allocated + " bytes on misses for \"" + miss + "\"");
+			}
+		}
+	}
+
+	/**
+	 * Checks the queries that take a maximum number of words at the smallest limits: 0 or
+	 * less returns null, and 1 returns one word (the first of the completion list, for
+	 * completionList). Also checks that a weight summed past Integer.MAX_VALUE stays the
+	 * largest instead of overflowing.
+	 */
+	private static void checkLimits(Trie trie, String word) {
+		String prefix = word.substring(0, 1);
+		String first = trie.completionList(prefix).get(0);
+		for (int limit=-1; limit <= 1; limit++) {
+			ArrayList<String> some = trie.completionList(prefix, limit);
+			if (limit <= 0 ? some != null : some == null || some.size() != 1 || !some.get(0).equals(first)) {
+				throw new IllegalStateException("completionList(\"" + prefix + "\", " + limit + ") returned " + some);
+			}
+			some = trie.wordsAfter(null, limit);
+			if (limit <= 0 ? some != null : some == null || some.size() != 1) {
+				throw new IllegalStateException("wordsAfter(null, " + limit + ") returned " + some);
+			}
+			some = trie.topK(prefix, limit);
+			if (limit <= 0 ? some != null : some == null || some.size() != 1) {
+				throw new IllegalStateException("topK(\"" + prefix + "\", " + limit + ") returned " + some);
+			}
+		}
+
+		Trie weighted = new Trie();
+		weighted.insertWord("a", Integer.MAX_VALUE);
+		weighted.insertWord("ab", 1);
+		weighted.insertWord("a", 5);
+		ArrayList<String> top = weighted.topK("a", 2);
+		if (!top.equals(Arrays.asList("a", "ab"))) {
+			throw new IllegalStateException("topK(\"a\", 2) after an overflowing weight returned " + top);
+		}
+	}
+
+	/**
+	 * Times insertWord on the packed (parallel arrays) trie over the given words, and
+	 * compares its heap per node with a Trie's, in all and for the nodes alone: the word
+	 * registry is the packed trie's heap less its node arrays, and the Trie keeps the same.
+	 */
+	private static void benchmarkPackedLoad(ArrayList<String> words) {
+		long before = usedHeap();
+		PackedTrie trie = new PackedTrie();
+		long start = System.nanoTime();
+		for (String word : words) {
+			trie.insertWord(word);
+		}
+		long load = System.nanoTime() - start;
+		long packedBytes = usedHeap() - before;
+		int packedNodes = trie.nodeCount();
+		long packedNodeBytes = trie.nodeBytes();
+		trie = null;
+
+		// the same words in a Trie, for the heap each takes per node (both share the
+		// words' Strings, and keep an id for each word)
+		before = usedHeap();
+		Trie objects = new Trie();
+		for (String word : words) {
+			objects.insertWord(word);
+		}
+		long trieBytes = usedHeap() - before;
+		long trieNodes = objects.stats().nodes();
+
+		// both keep the same word registry -> what the packed trie takes besides its node arrays
+		long registryBytes = packedBytes - packedNodeBytes;
+		System.out.printf("packed load %,d words: %,d ms (%,d ns/word), %,d nodes; heap %.1f bytes/node, Trie %.1f bytes/node; "
+				+ "nodes alone %.1f bytes/node, Trie %.1f bytes/node (%.1fx)%n",
+				words.size(), load/1000000, load/words.size(), packedNodes,
+				(double)packedBytes / packedNodes, (double)trieBytes / trieNodes,
+				(double)packedNodeBytes / packedNodes, (double)(trieBytes - registryBytes) / trieNodes,
+				(double)(trieBytes - registryBytes) / trieNodes / ((double)packedNodeBytes / packedNodes));
+	}
+
+	/**
+	 * Times Trie.buildFromSorted against insertWord, both over the words in sorted order,
+	 * and checks that both give the same nodes (see TrieChecks.shape).
+	 */
+	private static void benchmarkBulkBuild(ArrayList<String> words) {
+		ArrayList<String> sorted = new ArrayList<String>(words);
+		Collections.sort(sorted);
+
+		long start = System.nanoTime();
+		Trie inserted = new Trie();
+		for (String word : sorted) {
+			inserted.insertWord(word);
+		}
+		long insert = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		Trie built = Trie.buildFromSorted(sorted);
+		long build = System.nanoTime() - start;
+
+		System.out.printf("sorted %,d words: insertWord %,d ms, buildFromSorted %,d ms (%.1fx)%n",
+				sorted.size(), insert/1000000, build/1000000, (double)insert/build);
+		if (!TrieChecks.shape(inserted).equals(TrieChecks.shape(built))) {
+			throw new IllegalStateException("built trie differs from inserted trie");
+		}
+	}
+
+	/**
+	 * Times Trie.buildParallel on pools of 1, 8, 16 and 32 threads against insertWord, over
+	 * the words in the order given, and checks that each built trie completes every first
+	 * character to the same list as the inserted one. The speedup is bounded by the number
+	 * of processors, which is printed along with it.
+	 */
+	private static void benchmarkParallelBuild(ArrayList<String> words) {
+		long start = System.nanoTime();
+		Trie inserted = new Trie();
+		for (String word : words) {
+			inserted.insertWord(word);
+		}
+		long insert = System.nanoTime() - start;
+
+		HashSet<String> firsts = new HashSet<String>();
+		for (String word : words) {
+			firsts.add(word.substring(0, 1));
+		}
+
+		for (int threads : new int[] {1, 8, 16, 32}) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			start = System.nanoTime();
+			Trie built = Trie.buildParallel(words, pool);
+			long build = System.nanoTime() - start;
+			pool.shutdown();
+
+			for (String first : firsts) {
+				if (!inserted.completionList(first).equals(built.completionList(first))) {
+					throw new IllegalStateException("parallel trie differs from inserted trie at " + first);
+				}
+			}
+			System.out.printf("parallel %,d words on %d threads (%d processors): insertWord %,d ms, buildParallel %,d ms (%.1fx)%n",
+					words.size(), threads, Runtime.getRuntime().availableProcessors(),
+					insert/1000000, build/1000000, (double)insert/build);
+		}
+	}
+
+	/**
+	 * Times writing a snapshot of a trie, opening it, and completing from it, against
+	 * rebuilding the trie.
+	 */
+	private static void benchmarkSnapshot(ArrayList<String> words)
+	throws IOException {
+		ArrayList<String> sorted = new ArrayList<String>(words);
+		Collections.sort(sorted);
+		long start = System.nanoTime();
+		Trie trie = Trie.buildFromSorted(sorted);
+		long build = System.nanoTime() - start;
+
+		File file = File.createTempFile("trie", ".snapshot");
+		file.deleteOnExit();
+		start = System.nanoTime();
+		TrieSnapshot.write(trie, file);
+		long write = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		TrieSnapshot snapshot = TrieSnapshot.open(file);
+		long open = System.nanoTime() - start;
+
+		String prefix = sorted.get(sorted.size() / 2);
+		start = System.nanoTime();
+		ArrayList<String> matches = snapshot.completionList(prefix);
+		long first = System.nanoTime() - start;
+		if (matches == null || !matches.equals(trie.completionList(prefix))) {
+			throw new IllegalStateException("snapshot differs from trie for " + prefix);
+		}
+
+		System.out.printf("snapshot %,d words (%,d KB): build %,d ms, write %,d ms, open %.2f ms, first completion %.2f ms%n",
+				sorted.size(), file.length()/1024, build/1000000, write/1000000, open/1e6, first/1e6);
+		file.delete();
+	}
+
+	/**
+	 * Times completionList over a query mix that repeats a few short prefixes (as query
+	 * logs do), without and with the prefix cache, inserting a word every 100 queries so
+	 * that the cache is invalidated along the way.
+	 */
+	private static void benchmarkCache(ArrayList<String> words) {
+		Random random = new Random(7);
+		String[] hot = new String[50];
+		for (int i=0; i < hot.length; i++) {
+			String word = words.get(random.nextInt(words.size()));
+			hot[i] = word.substring(0, Math.min(word.length(), 2 + random.nextInt(3)));
+		}
+		int queries = 20000;
+		String[] mix = new String[queries];
+		for (int i=0; i < queries; i++) {
+			// skewed towards the first hot prefixes
+			mix[i] = hot[(int)(hot.length * Math.pow(random.nextDouble(), 3))];
+		}
+
+		for (boolean cached : new boolean[] {false, true}) {
+			Trie trie = new Trie();
+			int half = words.size() / 2;
+			for (int i=0; i < half; i++) {
+				trie.insertWord(words.get(i));
+			}
+			if (cached) {
+				trie.enableCache(words.size());
+			}
+			long start = System.nanoTime();
+			for (int i=0; i < queries; i++) {
+				trie.completionList(mix[i]);
+				if (i % 100 == 99 && half < words.size()) {
+					trie.insertWord(words.get(half++));
+				}
+			}
+			long time = System.nanoTime() - start;
+			System.out.printf("hot prefixes over %,d words, cache %s: %,d ns/completion%s%n",
+					words.size(), cached ? "on" : "off", time/queries,
+					cached ? " (" + trie.getCache() + ")" : "");
+		}
+	}
+
+	/**
+	 * Churns the vocabulary of a trie: starting from the first half of the words, removes
+	 * each of them while inserting one of the second half, then compares the heap the
+	 * trie holds on to with that of a trie built from the second half only.
+	 */
+	private static void benchmarkChurn(ArrayList<String> words) {
+		int half = words.size() / 2;
+
+		long before = usedHeap();
+		Trie churned = new Trie();
+		for (int i=0; i < half; i++) {
+			churned.insertWord(new String(words.get(i))); //words only the trie holds on to
+		}
+		long start = System.nanoTime();
+		for (int i=0; i < half; i++) {
+			churned.removeWord(words.get(i));
+			churned.insertWord(new String(words.get(half + i)));
+		}
+		long time = System.nanoTime() - start;
+		long churnedBytes = usedHeap() - before;
+
+		before = usedHeap();
+		Trie fresh = new Trie();
+		for (int i=half; i < 2*half; i++) {
+			fresh.insertWord(new String(words.get(i)));
+		}
+		long freshBytes = usedHeap() - before;
+
+		if (!churned.completionList(words.get(half)).equals(fresh.completionList(words.get(half)))) {
+			throw new IllegalStateException("churned trie differs from fresh trie");
+		}
+		System.out.printf("churn %,d words: %,d ns/remove+insert, heap %,d KB vs fresh %,d KB (%+.1f%%)%n",
+				half, time/half, churnedBytes/1024, freshBytes/1024,
+				100.0 * (churnedBytes - freshBytes) / freshBytes);
+	}
+
+	/**
+	 * Times Trie.fuzzyCompletions against scanning all the words for their edit distance,
+	 * for misspelled prefixes (a word but its last two characters, with one character changed)
+	 * and 1 and 2 edits.
+	 */
+	private static void benchmarkFuzzy(ArrayList<String> words) {
+		Trie trie = new Trie();
+		for (String word : words) {
+			trie.insertWord(word);
+		}
+		Random random = new Random(3);
+		String[] prefixes = new String[20];
+		for (int i=0; i < prefixes.length; i++) {
+			String word = words.get(random.nextInt(words.size()));
+			char[] prefix = word.substring(0, word.length() - 2).toCharArray();
+			prefix[1 + random.nextInt(prefix.length - 1)] = (char)('a' + random.nextInt(26));
+			prefixes[i] = new String(prefix);
+		}
+
+		for (int edits=1; edits <= 2; edits++) {
+			long found = 0;
+			long start = System.nanoTime();
+			for (String prefix : prefixes) {
+				ArrayList<String> matches = trie.fuzzyCompletions(prefix, edits);
+				found += matches == null ? 0 : matches.size();
+			}
+			long fuzzy = (System.nanoTime() - start) / prefixes.length;
+
+			long scanned = 0;
+			start = System.nanoTime();
+			for (String prefix : prefixes) {
+				for (String word : words) {
+					if (prefixDistance(prefix, word, edits) <= edits) {
+						scanned++;
+					}
+				}
+			}
+			long scan = (System.nanoTime() - start) / prefixes.length;
+
+			if (found != scanned) {
+				throw new IllegalStateException("fuzzy completions differ from scan");
+			}
+			System.out.printf("fuzzy %,d words, %d edits: fuzzyCompletions %,d us, scan %,d us (%.0fx), %,d matches/query%n",
+					words.size(), edits, fuzzy/1000, scan/1000, (double)scan/fuzzy, found/prefixes.length);
+		}
+	}
+
+	/**
+	 * Times countWithPrefix against completionList(prefix).size(), and reading the last
+	 * page of 10 completions with completionList(prefix, offset, limit) against taking it
+	 * from the full list, for one-character prefixes.
+	 */
+	private static void benchmarkCount(ArrayList<String> words) {
+		Trie trie = new Trie();
+		for (String word : words) {
+			trie.insertWord(word);
+		}
+		String[] prefixes = new String[26];
+		for (int i=0; i < prefixes.length; i++) {
+			prefixes[i] = String.valueOf((char)('a' + i));
+		}
+
+		long total = 0, listed = 0, paged = 0, sliced = 0;
+		for (int run=0; run < 2; run++) { //first run warms up
+			long start = System.nanoTime();
+			for (String prefix : prefixes) {
+				total += trie.countWithPrefix(prefix);
+			}
+			long count = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (String prefix : prefixes) {
+				ArrayList<String> matches = trie.completionList(prefix);
+				listed += matches == null ? 0 : matches.size();
+			}
+			long list = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (String prefix : prefixes) {
+				ArrayList<String> page = trie.completionList(prefix, trie.countWithPrefix(prefix) - 10, 10);
+				paged += page == null ? 0 : page.size();
+			}
+			long page = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (String prefix : prefixes) {
+				ArrayList<String> matches = trie.completionList(prefix);
+				sliced += matches == null ? 0 : matches.subList(Math.max(0, matches.size() - 10), matches.size()).size();
+			}
+			long slice = System.nanoTime() - start;
+
+			if (total != listed || paged != sliced) {
+				throw new IllegalStateException("counts differ from completion lists");
+			}
+			if (run == 1) {
+				System.out.printf("count %,d words: countWithPrefix %,d ns, completionList().size() %,d us; last page %,d ns vs %,d us%n",
+						words.size(), count/prefixes.length, list/prefixes.length/1000,
+						page/prefixes.length, slice/prefixes.length/1000);
+			}
+		}
+	}
+
+	/**
+	 * Times listing every word in sorted order with range(null, null) against copying
+	 * them out of a HashSet and sorting, and paging through the whole dictionary 100 words
+	 * at a time with wordsAfter.
+	 */
+	private static void benchmarkRange(ArrayList<String> words) {
+		Trie trie = new Trie();
+		HashSet<String> set = new HashSet<String>();
+		for (String word : words) {
+			trie.insertWord(word);
+			set.add(word);
+		}
+
+		for (int run=0; run < 2; run++) { //first run warms up
+			long start = System.nanoTime();
+			ArrayList<String> walked = new ArrayList<String>();
+			Iterator<String> all = trie.range(null, null);
+			while (all.hasNext()) {
+				walked.add(all.next());
+			}
+			long walk = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			ArrayList<String> sorted = new ArrayList<String>(set);
+			Collections.sort(sorted);
+			long sort = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			int paged = 0;
+			String last = null;
+			ArrayList<String> page;
+			while ((page = trie.wordsAfter(last, 100)) != null) {
+				paged += page.size();
+				last = page.get(page.size() - 1);
+			}
+			long pages = System.nanoTime() - start;
+
+			if (!walked.equals(sorted) || paged != sorted.size()) {
+				throw new IllegalStateException("range differs from sorted words");
+			}
+			if (run == 1) {
+				System.out.printf("range %,d words: sorted walk %,d us, sort of a copy %,d us, pages of 100 %,d us%n",
+						words.size(), walk/1000, sort/1000, pages/1000);
+			}
+		}
+	}
+
+	/**
+	 * Compares the memory of a trie with that of its frozen copy, in bits per node (the
+	 * trie's measured heap, with its word registry and the words, against the frozen
+	 * copy's measured heap and its encoding alone), and times completionList and lookups
+	 * on both.
+	 */
+	private static void benchmarkFreeze(ArrayList<String> words) {
+		long before = usedHeap();
+		Trie trie = new Trie();
+		for (String word : words) {
+			trie.insertWord(new String(word)); //words only the trie holds on to
+		}
+		long trieBytes = usedHeap() - before;
+
+		before = usedHeap();
+		FrozenTrie frozen = trie.freeze();
+		long frozenBytes = usedHeap() - before;
+		int nodes = frozen.nodeCount();
+
+		String[] prefixes = new String[Math.min(words.size(), 1000)];
+		for (int i=0; i < prefixes.length; i++) {
+			String word = words.get((int)((long)i * words.size() / prefixes.length));
+			prefixes[i] = word.substring(0, Math.max(1, word.length() - 3));
+		}
+		long trieTime = 0, frozenTime = 0, trieLookup = 0, frozenLookup = 0;
+		for (int run=0; run < 2; run++) { //first run warms up
+			long found = 0;
+			long start = System.nanoTime();
+			for (String prefix : prefixes) {
+				ArrayList<String> matches = trie.completionList(prefix);
+				found += matches == null ? 0 : matches.size();
+			}
+			trieTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (String prefix : prefixes) {
+				ArrayList<String> matches = frozen.completionList(prefix);
+				found -= matches == null ? 0 : matches.size();
+			}
+			frozenTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (String word : words) {
+				found += trie.countWithPrefix(word);
+			}
+			trieLookup = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (String word : words) {
+				found -= frozen.contains(word) ? 1 : 0;
+			}
+			frozenLookup = System.nanoTime() - start;
+			if (found != 0) {
+				throw new IllegalStateException("frozen trie differs from trie");
+			}
+		}
+
+		System.out.printf("freeze %,d words, %,d nodes: trie %.0f bits/node, frozen %.0f bits/node (encoding %.1f); "
+				+ "completionList %,d vs %,d ns, lookup %,d vs %,d ns%n",
+				words.size(), nodes, 8.0 * trieBytes / nodes, 8.0 * frozenBytes / nodes,
+				(double)frozen.sizeInBits() / nodes, trieTime / prefixes.length, frozenTime / prefixes.length,
+				trieLookup / words.size(), frozenLookup / words.size());
+	}
+
+	/**
+	 * Compares the number of nodes and the heap of a trie and of a DAWG built from the
+	 * same sorted words, and times lookups of every word in both: for the words as given
+	 * (every base word with every counter, so their endings are shared by construction),
+	 * and for English-like words: random stems, an eighth as many as the words, each with
+	 * every one of a few common suffixes.
+	 */
+	private static void benchmarkDawg(ArrayList<String> words) {
+		String[] suffixes = {"", "s", "ed", "ing", "er", "ness", "tion", "able"};
+		Random random = new Random(42);
+		HashSet<String> stems = new HashSet<String>();
+		StringBuilder sb = new StringBuilder();
+		while (stems.size() < Math.max(1, words.size() / suffixes.length)) {
+			sb.setLength(0);
+			int length = 3 + random.nextInt(7);
+			for (int i=0; i < length; i++) {
+				sb.append((char)('a' + random.nextInt(26)));
+			}
+			stems.add(sb.toString());
+		}
+		ArrayList<String> inflected = new ArrayList<String>(words.size());
+		for (String stem : stems) {
+			for (String suffix : suffixes) {
+				inflected.add(stem + suffix); //the stem itself too, a prefix of the others
+			}
+		}
+
+		for (ArrayList<String> set : Arrays.asList(words, inflected)) {
+			ArrayList<String> sorted = new ArrayList<String>(set);
+			Collections.sort(sorted);
+			long before = usedHeap();
+			Dawg dawg = Dawg.buildFromSorted(sorted);
+			long dawgBytes = usedHeap() - before;
+			before = usedHeap();
+			Trie trie = Trie.buildFromSorted(sorted);
+			long trieBytes = usedHeap() - before;
+			int trieNodes = trie.freeze().nodeCount();
+
+			long trieTime = 0, dawgTime = 0;
+			for (int run=0; run < 2; run++) { //first run warms up
+				long found = 0;
+				long start = System.nanoTime();
+				for (String word : set) {
+					found += word.equals(trie.longestPrefixOf(word)) ? 1 : 0; //exact match, as the DAWG's
+				}
+				trieTime = System.nanoTime() - start;
+				start = System.nanoTime();
+				for (String word : set) {
+					found -= dawg.contains(word) ? 1 : 0;
+				}
+				dawgTime = System.nanoTime() - start;
+				if (found != 0) {
+					throw new IllegalStateException("DAWG differs from trie");
+				}
+			}
+
+			System.out.printf("dawg %,d %s words: trie %,d nodes (%,d KB), dawg %,d nodes (%,d KB), %.1fx fewer; lookup %,d vs %,d ns%n",
+					set.size(), set == words ? "synthetic" : "English-like", trieNodes, trieBytes/1024,
+					dawg.nodeCount(), dawgBytes/1024, (double)trieNodes / dawg.nodeCount(),
+					trieTime / set.size(), dawgTime / set.size());
+		}
+	}
+
+	/**
+	 * Times building a suffix index over the words of a trie (per character of the words),
+	 * and finding the words that contain a pattern with it against a String.contains scan
+	 * of every word, for four-character patterns taken from words. The words are random
+	 * ones, as many as given: the synthetic words share their few base words, so any
+	 * pattern from one is in a good part of all of them.
+	 */
+	private static void benchmarkSuffixIndex(ArrayList<String> given) {
+		Random random = new Random(42);
+		ArrayList<String> words = new ArrayList<String>(given.size());
+		Trie trie = new Trie();
+		long chars = 0;
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i < given.size(); i++) {
+			sb.setLength(0);
+			int length = 5 + random.nextInt(8);
+			for (int c=0; c < length; c++) {
+				sb.append((char)('a' + random.nextInt(26)));
+			}
+			String word = sb.append('#').toString(); //# ends the word, so no word is a prefix of another
+			words.add(word);
+			trie.insertWord(word);
+			chars += word.length() + 1;
+		}
+		long start = System.nanoTime();
+		SuffixIndex index = trie.buildSuffixIndex();
+		long build = System.nanoTime() - start;
+
+		String[] patterns = new String[100];
+		for (int i=0; i < patterns.length; i++) {
+			String word = words.get(random.nextInt(words.size()));
+			int from = random.nextInt(word.length() - 4);
+			patterns[i] = word.substring(from, from + 4);
+		}
+		long indexed = 0, scanned = 0, found = 0;
+		for (int run=0; run < 2; run++) { //first run warms up
+			start = System.nanoTime();
+			for (String pattern : patterns) {
+				ArrayList<String> matches = index.containing(pattern);
+				found += matches == null ? 0 : matches.size();
+			}
+			indexed = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (String pattern : patterns) {
+				for (String word : words) {
+					if (word.contains(pattern)) {
+						found--;
+					}
+				}
+			}
+			scanned = System.nanoTime() - start;
+			if (found != 0) {
+				throw new IllegalStateException("suffix index differs from scan");
+			}
+		}
+
+		System.out.printf("suffix index %,d words (%,d chars): build %,d ms (%,d ns/char); containing %,d us vs scan %,d us%n",
+				words.size(), chars, build/1000000, build/chars, indexed/patterns.length/1000, scanned/patterns.length/1000);
+	}
+
+	/**
+	 * Times match against what it replaces: the completion list of the pattern's literal
+	 * prefix (or every word, with none), filtered with a regular expression. Patterns are
+	 * made from words, as "c?t" (one character of the word replaced), "pro*ing" (the first
+	 * three and last three characters) and "*ing" (the last three only).
+	 */
+	private static void benchmarkMatch(ArrayList<String> words) {
+		Trie trie = new Trie();
+		for (String word : words) {
+			trie.insertWord(word);
+		}
+		Random random = new Random(42);
+		String[][] patterns = new String[3][100];
+		for (int i=0; i < 100; i++) {
+			String word = words.get(random.nextInt(words.size()));
+			int pos = 1 + random.nextInt(word.length() - 1);
+			patterns[0][i] = word.substring(0, pos) + "?" + word.substring(pos + 1);
+			patterns[1][i] = word.substring(0, 3) + "*" + word.substring(word.length() - 3);
+			patterns[2][i] = "*" + word.substring(word.length() - 3);
+		}
+
+		String[] names = {"one ?", "prefix*suffix", "*suffix"};
+		for (int kind=0; kind < patterns.length; kind++) {
+			long matched = 0, filtered = 0, found = 0;
+			for (int run=0; run < 2; run++) { //first run warms up
+				long start = System.nanoTime();
+				for (String pattern : patterns[kind]) {
+					ArrayList<String> matches = trie.match(pattern);
+					found += matches == null ? 0 : matches.size();
+				}
+				matched = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (String pattern : patterns[kind]) {
+					int literal = 0;
+					while (literal < pattern.length() && pattern.charAt(literal) != '?' && pattern.charAt(literal) != '*') {
+						literal++;
+					}
+					ArrayList<String> candidates = literal == 0 ? words : trie.completionList(pattern.substring(0, literal));
+					java.util.regex.Pattern regex = java.util.regex.Pattern.compile(pattern.replace("?", ".").replace("*", ".*"));
+					for (String word : candidates) {
+						if (regex.matcher(word).matches()) {
+							found--;
+						}
+					}
+				}
+				filtered = System.nanoTime() - start;
+				if (found != 0) {
+					throw new IllegalStateException("match differs from regular expression");
+				}
+			}
+			System.out.printf("match %,d words, %s: match %,d us, prefix list + regex %,d us%n",
+					words.size(), names[kind], matched/100/1000, filtered/100/1000);
+		}
+	}
+
+	/**
+	 * Times longestPrefixOf and prefixesOf (lengths) against probing a hash set with every
+	 * prefix of the input, longest first, and checks that they allocate nothing. As in
+	 * checkMissAllocation, the lookups are measured again, up to MISS_ROUNDS times after
+	 * warming up, while the JIT may still be allocating. The trie keeps its words on the
+	 * heap: off the heap, longestPrefixOf builds the String it returns. The trie has the
+	 * words and, for every other word, its first half as a word too; inputs are words with
+	 * a few more characters after them.
+	 */
+	private static void benchmarkPrefixes(ArrayList<String> words) {
+		Trie trie = new Trie();
+		HashSet<String> set = new HashSet<String>();
+		for (int i=0; i < words.size(); i++) {
+			String word = words.get(i);
+			trie.insertWord(word);
+			set.add(word);
+			if (i % 2 == 0) {
+				String half = word.substring(0, word.length() / 2);
+				trie.insertWord(half);
+				set.add(half);
+			}
+		}
+		Random random = new Random(42);
+		String[] inputs = new String[1000];
+		for (int i=0; i < inputs.length; i++) {
+			inputs[i] = words.get(random.nextInt(words.size())) + "/x" + random.nextInt(100);
+		}
+
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		int[] lengths = new int[64];
+		int rounds = 200;
+		long longest = 0, prefixes = 0, probed = 0, longestBytes = 0, prefixesBytes = 0;
+		int run;
+		for (run=0; run < 2 || (longestBytes + prefixesBytes > 0 && run <= MISS_ROUNDS); run++) { //first run warms up
+			long found = 0;
+			long before = threads.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			for (int r=0; r < rounds; r++) {
+				for (String input : inputs) {
+					found += trie.longestPrefixOf(input).length();
+				}
+			}
+			longest = System.nanoTime() - start;
+			longestBytes = threads.getThreadAllocatedBytes(thread) - before;
+
+			before = threads.getThreadAllocatedBytes(thread);
+			start = System.nanoTime();
+			for (int r=0; r < rounds; r++) {
+				for (String input : inputs) {
+					found += trie.prefixesOf(input, lengths);
+				}
+			}
+			prefixes = System.nanoTime() - start;
+			prefixesBytes = threads.getThreadAllocatedBytes(thread) - before;
+
+			start = System.nanoTime();
+			for (int r=0; r < rounds; r++) {
+				for (String input : inputs) {
+					int longestLength = 0;
+					for (int length=input.length(); length > 0; length--) {
+						if (set.contains(input.substring(0, length))) {
+							if (longestLength == 0) {
+								longestLength = length;
+							}
+							found--;
+						}
+					}
+					found -= longestLength;
+				}
+			}
+			probed = System.nanoTime() - start;
+			if (found != 0) {
+				throw new IllegalStateException("prefix lookups differ from hash set probes");
+			}
+		}
+
+		long lookups = (long)rounds * inputs.length;
+		System.out.printf("prefixes %,d words: longestPrefixOf %,d ns, prefixesOf %,d ns, hash set probes %,d ns per input; %,d and %,d bytes allocated over %,d lookups (round %d)%n",
+				set.size(), longest/lookups, prefixes/lookups, probed/lookups,
+				longestBytes, prefixesBytes, lookups, run - 1);
+		if (longestBytes + prefixesBytes > 0) {
+			throw new IllegalStateException("longestPrefixOf and prefixesOf allocated " + longestBytes + " and "
+					+ prefixesBytes + " bytes");
+		}
+	}
+
+	/**
+	 * Times insertWord and completionList for words less their last two characters, with instrumentation on
+	 * or off (run once with -Dstructures.trie.metrics=true and once without to see its
+	 * cost), then times stats() and prints its report, and the counters if they are on.
+	 */
+	private static void benchmarkInstrumentation(ArrayList<String> words) {
+		Random random = new Random(42);
+		String[] prefixes = new String[10000];
+		for (int i=0; i < prefixes.length; i++) {
+			String word = words.get(random.nextInt(words.size()));
+			prefixes[i] = word.substring(0, Math.max(1, word.length() - 2));
+		}
+
+		Trie trie = null;
+		long insert = 0, complete = 0, listed = 0;
+		for (int run=0; run < 2; run++) { //first run warms up
+			trie = new Trie();
+			long start = System.nanoTime();
+			for (String word : words) {
+				trie.insertWord(word);
+			}
+			insert = System.nanoTime() - start;
+
+			listed = 0;
+			start = System.nanoTime();
+			for (String prefix : prefixes) {
+				ArrayList<String> matches = trie.completionList(prefix);
+				listed += matches == null ? 0 : matches.size();
+			}
+			complete = System.nanoTime() - start;
+		}
+
+		long start = System.nanoTime();
+		TrieStats stats = trie.stats();
+		long walk = System.nanoTime() - start;
+
+		System.out.printf("instrumentation %s, %,d words: insertWord %,d ns, completionList %,d ns per prefix (%,d words listed); stats() %,d ms%n",
+				TrieMetrics.ENABLED ? "on" : "off", words.size(), insert/words.size(),
+				complete/prefixes.length, listed, walk/1000000);
+		System.out.print(stats);
+		if (trie.getMetrics() != null) {
+			System.out.print(trie.getMetrics());
+		}
+	}
+
+	/**
+	 * Builds a trie with its words on the heap and one with them off the heap, and for
+	 * each reports the insert time, the completionList time for words less their last
+	 * two characters, the heap in use with the trie, the direct memory of its words, and
+	 * how long a full collection takes with the trie live.
+	 */
+	private static void benchmarkOffHeapWords(ArrayList<String> words) {
+		Random random = new Random(42);
+		String[] prefixes = new String[10000];
+		for (int i=0; i < prefixes.length; i++) {
+			String word = words.get(random.nextInt(words.size()));
+			prefixes[i] = word.substring(0, Math.max(1, word.length() - 2));
+		}
+
+		for (boolean offHeap : new boolean[] {false, true}) {
+			long before = usedHeap();
+			Trie trie = null;
+			long insert = 0, complete = 0, listed = 0;
+			for (int run=0; run < 2; run++) { //first run warms up
+				trie = null;
+				trie = new Trie(offHeap);
+				long start = System.nanoTime();
+				for (String word : words) {
+					trie.insertWord(word);
+				}
+				insert = System.nanoTime() - start;
+
+				listed = 0;
+				start = System.nanoTime();
+				for (String prefix : prefixes) {
+					ArrayList<String> matches = trie.completionList(prefix);
+					listed += matches == null ? 0 : matches.size();
+				}
+				complete = System.nanoTime() - start;
+			}
+			long heap = usedHeap() - before;
+
+			long start = System.nanoTime();
+			System.gc();
+			long collect = System.nanoTime() - start;
+
+			System.out.printf("%s words, %,d words: insertWord %,d ns, completionList %,d ns per prefix (%,d words listed); heap %,d bytes, off the heap %,d bytes; full GC %,d ms%n",
+					offHeap ? "off-heap" : "heap", words.size(), insert/words.size(),
+					complete/prefixes.length, listed, heap, trie.stats().offHeapBytes(), collect/1000000);
+		}
+	}
+
+	/**
+	 * Smallest edit distance between prefix and a prefix of word, stopping once it cannot
+	 * be within maxEdits (the scan that fuzzyCompletions replaces).
+	 */
+	private static int prefixDistance(String prefix, String word, int maxEdits) {
+		int m = prefix.length();
+		int[] prev = new int[m + 1];
+		int[] row = new int[m + 1];
+		for (int j=0; j <= m; j++) {
+			prev[j] = j;
+		}
+		int best = prev[m];
+		for (int i=0; i < word.length() && i < m + maxEdits; i++) {
+			row[0] = i + 1;
+			int min = row[0];
+			for (int j=1; j <= m; j++) {
+				int cost = prev[j-1] + (prefix.charAt(j-1) == word.charAt(i) ? 0 : 1);
+				row[j] = Math.min(cost, Math.min(prev[j], row[j-1]) + 1);
+				min = Math.min(min, row[j]);
+			}
+			best = Math.min(best, row[m]);
+			if (min > maxEdits) {
+				break;
+			}
+			int[] swap = prev;
+			prev = row;
+			row = swap;
+		}
+		return best;
+	}
+
+	/**
+	 * Heap in use after a full collection.
+	 */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i=0; i < 5; i++) {
+			System.gc();
+			used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+		}
+		return used;
+	}
+
+	/**
+	 * Times completionList for prefixes that end at the root's children, with one root
+	 * child per character of an alphabet of the given size.
+	 */
+	private static void benchmarkFanOut(int alphabet) {
+		Trie trie = new Trie();
+		char first = alphabet <= 26 ? 'a' : '\u4e00'; //CJK characters have no lower case
+		for (int i=0; i < alphabet; i++) {
+			trie.insertWord((char)(first + i) + "xyz");
+		}
+		String[] prefixes = new String[alphabet];
+		for (int i=0; i < alphabet; i++) {
+			prefixes[i] = String.valueOf((char)(first + i));
+		}
+
+		int lookups = 1000000;
+		for (int i=0; i < lookups; i++) {
+			trie.completionList(prefixes[i % alphabet]); //warm up
+		}
+		long start = System.nanoTime();
+		for (int i=0; i < lookups; i++) {
+			trie.completionList(prefixes[i % alphabet]);
+		}
+		long time = System.nanoTime() - start;
+
+		System.out.printf("root fan-out %,d: %,d ns/completion%n", alphabet, time/lookups);
+	}
+
+	/**
+	 * Puts as many siblings as there are usable characters (about 60,000: a compressed trie's
+	 * siblings all start with different characters) under one node, then times completing
+	 * all the words under it. Recursive walks over the sibling list overflowed the
+	 * call stack on this.
+	 */
+	private static void benchmarkWideNode() {
+		Trie trie = new Trie();
+		int siblings = 0;
+		for (int c=0x21; c <= 0xffff; c++) {
+			char ch = (char)c;
+			if (Character.isSurrogate(ch) || Character.toLowerCase(ch) != ch
+					|| String.valueOf(ch).toLowerCase().length() != 1) {
+				continue;
+			}
+			trie.insertWord("q" + ch + "z");
+			siblings++;
+		}
+
+		int runs = 20;
+		for (int i=0; i < runs; i++) {
+			trie.completionList("q"); //warm up
+		}
+		long start = System.nanoTime();
+		for (int i=0; i < runs; i++) {
+			if (trie.completionList("q").size() != siblings) {
+				throw new IllegalStateException("lost siblings");
+			}
+		}
+		long time = (System.nanoTime() - start) / runs;
+		System.out.printf("%,d siblings under one node: completionList %,d us (%,d ns/word)%n",
+				siblings, time/1000, time/siblings);
+	}
+
+	/**
+	 * Times loading the words from several writer threads, each with the words of its own
+	 * first characters (disjoint key ranges), into a ConcurrentTrie and into a Trie (whose
+	 * inserts take turns), and checks both end up with every word.
+	 */
+	private static void benchmarkConcurrentInserts(ArrayList<String> words, int writers)
+	throws InterruptedException {
+		final ArrayList<ArrayList<String>> partitions = new ArrayList<ArrayList<String>>();
+		for (int w=0; w < writers; w++) {
+			partitions.add(new ArrayList<String>());
+		}
+		HashSet<String> distinct = new HashSet<String>();
+		for (String word : words) {
+			partitions.get(word.charAt(0) % writers).add(word);
+			distinct.add(word);
+		}
+
+		long concurrent = 0, serialized = 0;
+		for (int run=0; run < 2; run++) { //first run warms up
+			final ConcurrentTrie concurrentTrie = new ConcurrentTrie();
+			final Trie trie = new Trie();
+			Thread[] threads = new Thread[writers];
+			for (int w=0; w < writers; w++) {
+				final ArrayList<String> partition = partitions.get(w);
+				threads[w] = new Thread() {
+					public void run() {
+						for (String word : partition) {
+							concurrentTrie.insertWord(word);
+						}
+					}
+				};
+			}
+			long start = System.nanoTime();
+			for (Thread thread : threads) {
+				thread.start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			concurrent = System.nanoTime() - start;
+
+			for (int w=0; w < writers; w++) {
+				final ArrayList<String> partition = partitions.get(w);
+				threads[w] = new Thread() {
+					public void run() {
+						for (String word : partition) {
+							trie.insertWord(word);
+						}
+					}
+				};
+			}
+			start = System.nanoTime();
+			for (Thread thread : threads) {
+				thread.start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			serialized = System.nanoTime() - start;
+
+			if (concurrentTrie.size() != distinct.size() || trie.stats().words() != distinct.size()) {
+				throw new IllegalStateException("words missing after concurrent inserts");
+			}
+		}
+
+		System.out.printf("concurrent inserts with %d writers (%d processors), %,d words: ConcurrentTrie %,d words/s, Trie %,d words/s%n",
+				writers, Runtime.getRuntime().availableProcessors(), words.size(),
+				words.size() * 1000000000L / concurrent, words.size() * 1000000000L / serialized);
+	}
+
+	/**
+	 * Inserts the words from one thread while reader threads run completionList, and checks
+	 * every result against the words inserted so far: a word whose insert had finished before
+	 * a read started must be found, a completion list may only hold words whose insert had at
+	 * least started, and no word may come out twice. Reports the read throughput, and
+	 * fails if any result was wrong.
+	 */
+	private static void stressConcurrentReads(final ArrayList<String> words, int readers)
+	throws InterruptedException {
+		final Trie trie = new Trie();
+		final AtomicInteger inserted = new AtomicInteger(); //words whose insert has finished
+		final AtomicInteger started = new AtomicInteger(); //words whose insert has started
+		final AtomicLong reads = new AtomicLong();
+		final AtomicInteger failures = new AtomicInteger();
+		final HashMap<String,Integer> position = new HashMap<String,Integer>();
+		for (int i=0; i < words.size(); i++) {
+			position.put(words.get(i), i);
+		}
+
+		Thread[] threads = new Thread[readers];
+		for (int t=0; t < readers; t++) {
+			final int seed = t;
+			threads[t] = new Thread() {
+				public void run() {
+					Random random = new Random(seed);
+					long count = 0;
+					while (inserted.get() < words.size()) {
+						int done = inserted.get();
+						if (done == 0) {
+							continue;
+						}
+						String word = words.get(random.nextInt(done));
+						String prefix = word.substring(0, 1 + random.nextInt(word.length()));
+						ArrayList<String> matches = trie.completionList(prefix);
+						int limit = started.get();
+						if (matches == null || !matches.contains(word)) {
+							failures.incrementAndGet();
+						} else {
+							HashSet<String> seen = new HashSet<String>();
+							for (String match : matches) {
+								Integer p = position.get(match);
+								if (p == null || p >= limit || !seen.add(match) || !match.startsWith(prefix)) {
+									failures.incrementAndGet();
+								}
+							}
+						}
+						count++;
+					}
+					reads.addAndGet(count);
+				}
+			};
+		}
+
+		long start = System.nanoTime();
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (String word : words) {
+			started.incrementAndGet();
+			trie.insertWord(word);
+			inserted.incrementAndGet();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long time = System.nanoTime() - start;
+
+		System.out.printf("concurrent inserts with %d readers: %,d reads/s, %d bad results%n",
+				readers, reads.get() * 1000000000L / time, failures.get());
+		if (failures.get() > 0) {
+			throw new IllegalStateException(failures.get() + " bad completion lists read during inserts");
+		}
+	}
+
+	/**
+	 * Reads all the words*.txt files in the test cases directory. Each file has the
+	 * number of words on the first line, then one word per line.
+	 */
+	static ArrayList<String> getBaseWords(String dir)
+	throws IOException {
+		ArrayList<String> base = new ArrayList<String>();
+		File[] files = new File(dir).listFiles();
+		if (files == null) {
+			throw new IOException("No such directory: " + dir);
+		}
+		for (File file : files) {
+			if (!file.getName().startsWith("words")) {
+				continue;
+			}
+			Scanner sc = new Scanner(file);
+			int numWords = sc.nextInt();
+			for (int i=0; i < numWords; i++) {
+				String word = sc.next().trim().toLowerCase();
+				if (!base.contains(word)) {
+					base.add(word);
+				}
+			}
+			sc.close();
+		}
+		return base;
+	}
+
+	/**
+	 * Scales the base words up to the given number of distinct words, by appending a
+	 * letter-encoded counter to each base word. Every generated word is padded to the
+	 * same length, so that no word is a prefix of another.
+	 */
+	static ArrayList<String> syntheticWords(ArrayList<String> base, int size) {
+		int maxLength = 0;
+		for (String word : base) {
+			maxLength = Math.max(maxLength, word.length());
+		}
+		int suffixLength = 1;
+		for (long n = 26; n * base.size() < size; n *= 26) {
+			suffixLength++;
+		}
+
+		ArrayList<String> words = new ArrayList<String>(size);
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i < size; i++) {
+			String word = base.get(i % base.size());
+			sb.setLength(0);
+			sb.append(word);
+			for (int p=word.length(); p < maxLength; p++) {
+				sb.append('z');
+			}
+			int counter = i / base.size();
+			for (int p=0; p < suffixLength; p++) {
+				sb.append((char)('a' + counter % 26));
+				counter /= 26;
+			}
+			words.add(sb.toString());
+		}
+		return words;
+	}
+
+}
@@ -0,0 +1,381 @@
+package apps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import structures.Trie;
+import structures.TrieSnapshot;
+
+/**
+ * Randomized checks of structures.Trie against a model: a trie built another way, or
+ * plain collections of the words. Each round makes up a small dictionary from a few
+ * letters, so that words share prefixes, are prefixes of each other, and repeat, and
+ * each check throws IllegalStateException at the first difference it finds.
+ *
+ * Usage: TrieChecks [rounds]
+ */
+public class TrieChecks {
+
+	static int rounds = 300;
+
+	public static void main(String[] args)
+	throws IOException, InterruptedException {
+
+		if (args.length > 0) {
+			rounds = Integer.parseInt(args[0]);
+		}
+
+		checkParallelBuild();
+		checkRemoval();
+		checkCounts();
+		checkOffHeapWords();
+	}
+
+	/**
+	 * Checks that buildParallel gives the same trie as insertWord: the same nodes, in the
+	 * same order, each holding the same substring of the same word (print's output with
+	 * the word ids left out), and the same completion lists. The words come in any order,
+	 * with repeats and upper case letters, and some dictionaries are large enough for
+	 * partitions to be split.
+	 */
+	private static void checkParallelBuild()
+	throws InterruptedException {
+		Random random = new Random(5);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		for (int round=0; round < rounds; round++) {
+			int count = 1 + random.nextInt(round % 3 == 0 ? 20000 : 200);
+			ArrayList<String> words = randomWords(random, count, 1 + random.nextInt(9), 2 + random.nextInt(25));
+			for (int i=0; i < words.size(); i += 1 + random.nextInt(7)) {
+				words.set(i, words.get(i).toUpperCase());
+			}
+
+			Trie inserted = new Trie();
+			for (String word : words) {
+				inserted.insertWord(word);
+			}
+			Trie built = Trie.buildParallel(words, pool);
+
+			if (!shape(inserted).equals(shape(built))) {
+				throw new IllegalStateException("parallel trie differs from inserted trie, round " + round);
+			}
+			for (int i=0; i < Math.min(50, words.size()); i++) {
+				String word = words.get(i).toLowerCase();
+				String prefix = word.substring(0, 1 + random.nextInt(word.length()));
+				if (!same(inserted.completionList(prefix), built.completionList(prefix))) {
+					throw new IllegalStateException("parallel trie completes \"" + prefix + "\" differently, round " + round);
+				}
+			}
+		}
+		pool.shutdown();
+		pool.awaitTermination(1, TimeUnit.MINUTES);
+		System.out.printf("parallel build: %d rounds OK%n", rounds);
+	}
+
+	/**
+	 * Checks removeWord against a map of the words in the trie to their weights, over
+	 * random inserts and removes of words that are often prefixes of each other. Every
+	 * removal returns whether the word was there; completion lists, counts and topK
+	 * match the map throughout, including after the words are renumbered (once 1 in 16
+	 * ids belongs to a removed word); and the trie keeps the nodes of one built from the
+	 * remaining words alone. A snapshot written after removals holds only the remaining
+	 * words.
+	 */
+	private static void checkRemoval()
+	throws IOException {
+		Random random = new Random(11);
+		File file = File.createTempFile("trie", ".snapshot");
+		file.deleteOnExit();
+		for (int round=0; round < rounds; round++) {
+			Trie trie = new Trie();
+			TreeMap<String,Integer> model = new TreeMap<String,Integer>();
+			int maxLength = 1 + random.nextInt(6);
+			int letters = 2 + random.nextInt(round % 3 == 0 ? 25 : 4);
+			for (int step=0; step < 1500; step++) {
+				String word = randomWords(random, 1, maxLength, letters).get(0);
+				int op = random.nextInt(10);
+				if (op < 5) {
+					int weight = random.nextInt(20);
+					trie.insertWord(word, weight);
+					Integer old = model.get(word);
+					model.put(word, old == null ? weight : old + weight);
+				} else if (op < 8) {
+					if (!model.isEmpty() && random.nextBoolean()) {
+						word = new ArrayList<String>(model.keySet()).get(random.nextInt(model.size()));
+					}
+					boolean had = model.remove(word) != null;
+					if (trie.removeWord(word) != had) {
+						throw new IllegalStateException("removeWord(\"" + word + "\") returned " + !had + ", round " + round);
+					}
+				} else {
+					checkPrefix(trie, model, word.substring(0, 1 + random.nextInt(word.length())), round);
+				}
+
+				if (step % 100 == 99) {
+					Trie fresh = new Trie();
+					for (String live : model.keySet()) {
+						fresh.insertWord(live);
+					}
+					if (trie.stats().nodes() != fresh.stats().nodes() || trie.stats().words() != model.size()) {
+						throw new IllegalStateException("trie has " + trie.stats().nodes() + " nodes after removals, "
+								+ fresh.stats().nodes() + " when built from the remaining words, round " + round);
+					}
+					if (!same(trie.wordsAfter(null, model.size() + 1), model.isEmpty() ? null : new ArrayList<String>(model.keySet()))) {
+						throw new IllegalStateException("wordsAfter differs from the remaining words, round " + round);
+					}
+				}
+			}
+
+			TrieSnapshot.write(trie, file);
+			TrieSnapshot snapshot = TrieSnapshot.open(file);
+			if (snapshot.wordCount() != model.size()) {
+				throw new IllegalStateException("snapshot has " + snapshot.wordCount() + " words, trie " + model.size() + ", round " + round);
+			}
+			for (char c='a'; c < 'a' + letters; c++) {
+				String prefix = String.valueOf(c);
+				if (!same(snapshot.completionList(prefix), trie.completionList(prefix))) {
+					throw new IllegalStateException("snapshot completes \"" + prefix + "\" differently, round " + round);
+				}
+			}
+		}
+		System.out.printf("removal: %d rounds OK%n", rounds);
+	}
+
+	/**
+	 * Checks the word counts kept in the nodes, over random inserts and removes: rank
+	 * (kthWordWithPrefix) and pages (completionList with an offset) against slices of
+	 * completionList now and then, and, at the end of each round, countWithPrefix for
+	 * every prefix of every word, which is the count of every node, in the trie and in
+	 * ones built by buildFromSorted and buildParallel from the same words. The built tries
+	 * also have the nodes of ones built by insertWord from the words in the same order,
+	 * and skip words that are empty once trimmed.
+	 */
+	private static void checkCounts() {
+		Random random = new Random(8);
+		for (int round=0; round < rounds; round++) {
+			Trie trie = new Trie();
+			TreeSet<String> model = new TreeSet<String>();
+			int maxLength = 1 + random.nextInt(6);
+			int letters = 2 + random.nextInt(round % 2 == 0 ? 4 : 25);
+			for (int step=0; step < 800; step++) {
+				String word = randomWords(random, 1, maxLength, letters).get(0);
+				if (random.nextInt(3) > 0) {
+					trie.insertWord(word);
+					model.add(word);
+				} else {
+					trie.removeWord(word);
+					model.remove(word);
+				}
+				if (step % 40 != 0) {
+					continue;
+				}
+
+				String prefix = word.substring(0, 1 + random.nextInt(word.length()));
+				ArrayList<String> all = trie.completionList(prefix);
+				int count = all == null ? 0 : all.size();
+				for (int k=-1; k <= count; k++) {
+					String expected = k >= 0 && k < count ? all.get(k) : null;
+					if (!same(trie.kthWordWithPrefix(prefix, k), expected)) {
+						throw new IllegalStateException("kthWordWithPrefix(\"" + prefix + "\", " + k + ") is "
+								+ trie.kthWordWithPrefix(prefix, k) + ", expected " + expected + ", round " + round);
+					}
+				}
+				int offset = random.nextInt(count + 2), limit = 1 + random.nextInt(10);
+				ArrayList<String> expected = offset < count ? new ArrayList<String>(all.subList(offset, Math.min(count, offset + limit))) : null;
+				if (!same(trie.completionList(prefix, offset, limit), expected)) {
+					throw new IllegalStateException("completionList(\"" + prefix + "\", " + offset + ", " + limit + ") is "
+							+ trie.completionList(prefix, offset, limit) + ", expected " + expected + ", round " + round);
+				}
+			}
+
+			ArrayList<String> sorted = new ArrayList<String>(model);
+			checkCountsOf(trie, model, "insertWord/removeWord", round);
+			sorted.add(0, "");
+			sorted.add(1, "  "); //empty once trimmed -> skipped
+			checkBuilt(Trie.buildFromSorted(sorted), sorted, model, "buildFromSorted", round);
+			Collections.shuffle(sorted, random);
+			checkBuilt(Trie.buildParallel(sorted), sorted, model, "buildParallel", round);
+		}
+		System.out.printf("counts: %d rounds OK%n", rounds);
+	}
+
+	/**
+	 * Checks a trie built from words against one built by insertWord from the same words
+	 * in the same order, node by node (see shape), and checks its counts.
+	 */
+	private static void checkBuilt(Trie trie, ArrayList<String> words, TreeSet<String> model, String built, int round) {
+		Trie inserted = new Trie();
+		for (String word : words) {
+			inserted.insertWord(word);
+		}
+		if (!shape(trie).equals(shape(inserted))) {
+			throw new IllegalStateException(built + " trie differs from inserted trie, round " + round);
+		}
+		checkCountsOf(trie, model, built, round);
+	}
+
+	/**
+	 * Checks countWithPrefix for every prefix of every word against a sorted set of the
+	 * words in the trie.
+	 */
+	private static void checkCountsOf(Trie trie, TreeSet<String> model, String built, int round) {
+		for (String word : model) {
+			for (int length=1; length <= word.length(); length++) {
+				String prefix = word.substring(0, length);
+				int expected = model.subSet(prefix, prefix + Character.MAX_VALUE).size();
+				if (trie.countWithPrefix(prefix) != expected) {
+					throw new IllegalStateException(built + " trie counts " + trie.countWithPrefix(prefix) + " words for \""
+							+ prefix + "\", expected " + expected + ", round " + round);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks a trie with its words off the heap (new Trie(true)) against one with them on
+	 * the heap, given the same inserts and removes: every removal returns the same, both
+	 * tries print the same (same nodes, word ids and substrings, so renumbering happened
+	 * alike), and their completion lists match a sorted set of the words. Words are made
+	 * of Latin letters, accented ones (one byte each in the arena) or CJK characters (two
+	 * bytes each), with now and then a character from further on. Then a large trie
+	 * checks words spread over many arena segments and address chunks.
+	 */
+	private static void checkOffHeapWords() {
+		Random random = new Random(7);
+		char[] firsts = {'a', '\u00e0', '\u4e00'};
+		StringBuilder sb = new StringBuilder();
+		for (int round=0; round < rounds; round++) {
+			Trie heap = new Trie(), offHeap = new Trie(true);
+			TreeSet<String> model = new TreeSet<String>();
+			char first = firsts[round % firsts.length];
+			for (int step=0; step < 2000; step++) {
+				sb.setLength(0);
+				int length = 1 + random.nextInt(9);
+				for (int i=0; i < length; i++) {
+					sb.append((char)(first + random.nextInt(4) + (random.nextInt(50) == 0 ? 300 : 0)));
+				}
+				String word = sb.toString().toLowerCase();
+				if (random.nextInt(10) < 7) {
+					heap.insertWord(word);
+					offHeap.insertWord(word);
+					model.add(word);
+				} else {
+					model.remove(word);
+					if (heap.removeWord(word) != offHeap.removeWord(word)) {
+						throw new IllegalStateException("removeWord(\"" + word + "\") differs off the heap, round " + round);
+					}
+				}
+			}
+
+			if (!shape(heap).equals(shape(offHeap))) {
+				throw new IllegalStateException("trie differs with its words off the heap, round " + round);
+			}
+			for (char c=first; c < first + 4; c++) {
+				String prefix = String.valueOf(c);
+				ArrayList<String> expected = new ArrayList<String>(model.subSet(prefix, prefix + Character.MAX_VALUE));
+				if (!same(offHeap.completionList(prefix), expected.isEmpty() ? null : expected)
+						|| !same(offHeap.completionList(prefix), heap.completionList(prefix))) {
+					throw new IllegalStateException("completionList(\"" + prefix + "\") differs off the heap, round " + round);
+				}
+			}
+			if (offHeap.stats().offHeapBytes() == 0 || offHeap.stats().wordBytes() != 0) {
+				throw new IllegalStateException("words of new Trie(true) are not off the heap, round " + round);
+			}
+		}
+
+		Trie offHeap = new Trie(true);
+		for (int i=0; i < 300000; i++) {
+			offHeap.insertWord("w" + i);
+		}
+		for (int i=0; i < 300000; i += 7) {
+			ArrayList<String> found = offHeap.completionList("w" + i);
+			if (found == null || !found.get(0).equals("w" + i)) {
+				throw new IllegalStateException("completionList(\"w" + i + "\") is " + found + " off the heap");
+			}
+		}
+		System.out.printf("off-heap words: %d rounds OK%n", rounds);
+	}
+
+	/**
+	 * Checks completionList, countWithPrefix and topK for a prefix against a map of the
+	 * words in the trie to their weights.
+	 */
+	private static void checkPrefix(Trie trie, TreeMap<String,Integer> model, String prefix, int round) {
+		ArrayList<String> expected = new ArrayList<String>();
+		int best = -1;
+		for (String word : model.tailMap(prefix).keySet()) {
+			if (!word.startsWith(prefix)) {
+				break;
+			}
+			expected.add(word);
+			best = Math.max(best, model.get(word));
+		}
+		ArrayList<String> found = trie.completionList(prefix);
+		if (found != null) {
+			Collections.sort(found);
+		}
+		if (!same(found, expected.isEmpty() ? null : expected)) {
+			throw new IllegalStateException("completionList(\"" + prefix + "\") is " + found + ", expected " + expected + ", round " + round);
+		}
+		if (trie.countWithPrefix(prefix) != expected.size()) {
+			throw new IllegalStateException("countWithPrefix(\"" + prefix + "\") is " + trie.countWithPrefix(prefix) + ", expected " + expected.size() + ", round " + round);
+		}
+		ArrayList<String> top = trie.topK(prefix, 1);
+		if (best >= 0 && (top == null || model.get(top.get(0)) != best)) {
+			throw new IllegalStateException("topK(\"" + prefix + "\", 1) is " + top + ", best weight " + best + ", round " + round);
+		}
+	}
+
+	/**
+	 * Makes up count words of the given greatest length from the first letters of the
+	 * alphabet (at most 26), each with a one in five chance of coming up twice in a row.
+	 */
+	static ArrayList<String> randomWords(Random random, int count, int maxLength, int letters) {
+		letters = Math.min(letters, 26);
+		ArrayList<String> words = new ArrayList<String>(count);
+		StringBuilder sb = new StringBuilder();
+		while (words.size() < count) {
+			sb.setLength(0);
+			int length = 1 + random.nextInt(maxLength);
+			for (int i=0; i < length; i++) {
+				sb.append((char)('a' + random.nextInt(letters)));
+			}
+			words.add(sb.toString());
+			if (random.nextInt(5) == 0) {
+				words.add(sb.toString());
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Returns what print writes for a trie, with the word id of each node left out.
+	 */
+	static String shape(Trie trie) {
+		PrintStream stdout = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(bytes));
+		try {
+			trie.print();
+		} finally {
+			System.setOut(stdout);
+		}
+		return bytes.toString().replaceAll("\\(\\d+,", "(");
+	}
+
+	/**
+	 * Tells whether two results are equal, null for no words included.
+	 */
+	static boolean same(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+}
@@ -0,0 +1,249 @@
+package structures;
+
+/**
+ * This class is a sequence of bits, appended one at a time and then frozen, with
+ * rank (number of 1 bits before a position) and select (position of the k-th 1 or 0
+ * bit) in constant time for rank and near constant time for select.
+ *
+ * The bits are kept in longs. Freezing adds a directory of the number of 1 bits before
+ * every block of BLOCK_BITS bits, and samples of the block holding every SAMPLE-th 1
+ * bit and 0 bit, from which select scans forward a few blocks at most; both cost about
+ * 1/16 of the bits themselves.
+ *
+ */
+class BitVector {
+
+	/**
+	 * Bits per block of the rank directory (8 longs), and number of 1s or 0s per select sample.
+	 */
+	private static final int BLOCK_BITS = 512, SAMPLE = 512;
+
+	private long[] bits;
+
+	/**
+	 * Number of bits appended.
+	 */
+	private int size;
+
+	/**
+	 * Number of 1 bits before each block, and one past the last block.
+	 */
+	private int[] ranks;
+
+	/**
+	 * Block holding the (i * SAMPLE)-th 1 bit and 0 bit.
+	 */
+	private int[] oneSamples, zeroSamples;
+
+	/**
+	 * Initializes an empty bit vector.
+	 *
+	 * @param capacity Number of bits expected (the vector grows past it as needed)
+	 */
+	BitVector(int capacity) {
+		bits = new long[Math.max(1, (capacity + 63) >>> 6)];
+	}
+
+	/**
+	 * Appends a bit. Only before freeze.
+	 *
+	 * @param bit Bit to append
+	 */
+	void add(boolean bit) {
+		if ((size >>> 6) == bits.length) {
+			long[] newBits = new long[bits.length * 2];
+			System.arraycopy(bits, 0, newBits, 0, bits.length);
+			bits = newBits;
+		}
+		if (bit) {
+			bits[size >>> 6] |= 1L << (size & 63);
+		}
+		size++;
+	}
+
+	/**
+	 * Trims the bits to size and builds the rank and select directories. No bits can be
+	 * added after this.
+	 */
+	void freeze() {
+		long[] trimmed = new long[(size + 63) >>> 6];
+		System.arraycopy(bits, 0, trimmed, 0, trimmed.length);
+		bits = trimmed;
+
+		int blocks = (size + BLOCK_BITS - 1) / BLOCK_BITS;
+		ranks = new int[blocks + 1];
+		int ones = 0;
+		for (int b=0; b < blocks; b++) {
+			ranks[b] = ones;
+			for (int i=b*8; i < Math.min(b*8 + 8, bits.length); i++) {
+				ones += Long.bitCount(bits[i]);
+			}
+		}
+		ranks[blocks] = ones;
+
+		int zeros = size - ones;
+		oneSamples = new int[(ones + SAMPLE - 1) / SAMPLE];
+		zeroSamples = new int[(zeros + SAMPLE - 1) / SAMPLE];
+		int one = 0, zero = 0;
+		for (int b=0; b < blocks; b++) {
+			int blockOnes = ranks[b+1] - ranks[b];
+			int blockZeros = Math.min(BLOCK_BITS, size - b*BLOCK_BITS) - blockOnes;
+			while (one < oneSamples.length && one * SAMPLE < ranks[b] + blockOnes) {
+				oneSamples[one++] = b;
+			}
+			while (zero < zeroSamples.length && zero * SAMPLE < (b*BLOCK_BITS - ranks[b]) + blockZeros) {
+				zeroSamples[zero++] = b;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of bits.
+	 *
+	 * @return Number of bits appended
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the bit at a position.
+	 *
+	 * @param i Position, 0 to size - 1
+	 * @return The bit
+	 */
+	boolean get(int i) {
+		return (bits[i >>> 6] & (1L << (i & 63))) != 0;
+	}
+
+	/**
+	 * Returns the position of the first 0 bit at or after a position, a word at a time.
+	 *
+	 * @param i Position, 0 or more
+	 * @return Position of the next 0 bit, or size if there is none
+	 */
+	int nextClear(int i) {
+		if (i >= size) {
+			return size;
+		}
+		int w = i >>> 6;
+		long word = ~bits[w] & (-1L << i);
+		while (word == 0) {
+			if (++w == bits.length) {
+				return size;
+			}
+			word = ~bits[w];
+		}
+		return Math.min((w << 6) + Long.numberOfTrailingZeros(word), size);
+	}
+
+	/**
+	 * Returns the position of the first 1 bit at or after a position, a word at a time.
+	 *
+	 * @param i Position, 0 or more
+	 * @return Position of the next 1 bit, or size if there is none
+	 */
+	int nextSet(int i) {
+		if (i >= size) {
+			return size;
+		}
+		int w = i >>> 6;
+		long word = bits[w] & (-1L << i);
+		while (word == 0) {
+			if (++w == bits.length) {
+				return size;
+			}
+			word = bits[w];
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	/**
+	 * Returns the number of 1 bits before a position.
+	 *
+	 * @param i Position, 0 to size
+	 * @return Number of 1 bits at positions 0 to i - 1
+	 */
+	int rank1(int i) {
+		int b = i / BLOCK_BITS;
+		int rank = ranks[b];
+		for (int w=b*8; w < (i >>> 6); w++) {
+			rank += Long.bitCount(bits[w]);
+		}
+		if ((i & 63) != 0) {
+			rank += Long.bitCount(bits[i >>> 6] & (-1L >>> (64 - (i & 63))));
+		}
+		return rank;
+	}
+
+	/**
+	 * Returns the position of the k-th 1 bit, counting from 0.
+	 *
+	 * @param k Number of 1 bits before the one wanted
+	 * @return Its position
+	 */
+	int select1(int k) {
+		int b = oneSamples[k / SAMPLE];
+		while (ranks[b+1] <= k) {
+			b++;
+		}
+		int left = k - ranks[b];
+		for (int w=b*8; ; w++) {
+			int count = Long.bitCount(bits[w]);
+			if (left < count) {
+				return (w << 6) + selectInWord(bits[w], left);
+			}
+			left -= count;
+		}
+	}
+
+	/**
+	 * Returns the position of the k-th 0 bit, counting from 0.
+	 *
+	 * @param k Number of 0 bits before the one wanted
+	 * @return Its position
+	 */
+	int select0(int k) {
+		int b = zeroSamples[k / SAMPLE];
+		while ((b+1)*BLOCK_BITS - ranks[b+1] <= k) {
+			b++;
+		}
+		int left = k - (b*BLOCK_BITS - ranks[b]);
+		for (int w=b*8; ; w++) {
+			int count = Long.bitCount(~bits[w]);
+			if (left < count) {
+				return (w << 6) + selectInWord(~bits[w], left);
+			}
+			left -= count;
+		}
+	}
+
+	/**
+	 * Position of the k-th 1 bit of a word, counting from 0 (the word has more than k).
+	 */
+	private static int selectInWord(long word, int k) {
+		int position = 0;
+		for (int half=32; half >= 8; half >>>= 1) { //narrows down to the byte holding the bit
+			int low = Long.bitCount(word & ((1L << half) - 1));
+			if (k >= low) {
+				word >>>= half;
+				position += half;
+				k -= low;
+			}
+		}
+		for (int i=0; i < k; i++) {
+			word &= word - 1; //clears the lowest 1 bit
+		}
+		return position + Long.numberOfTrailingZeros(word);
+	}
+
+	/**
+	 * Returns the memory taken by the bits and directories, in bits (not counting array headers).
+	 *
+	 * @return Size in bits
+	 */
+	long sizeInBits() {
+		return 64L * bits.length + 32L * (ranks.length + oneSamples.length + zeroSamples.length);
+	}
+
+}
@@ -0,0 +1,408 @@
+package structures;
+
+import java.util.Arrays;
+
+/**
+ * This class indexes the children of a trie node by their first character, so that the
+ * child to follow can be found without walking the firstChild/sibling list. The list
+ * itself is kept as it is; the index is only built for nodes with many children. The
+ * list is in order of first character, so the index also finds where in the list a new
+ * child goes (see before).
+ *
+ * Like the nodes of an adaptive radix tree, the index changes its layout with the
+ * number of children:
+ * - SORTED:  up to 16 children, keys in a sorted char array (binary search)
+ * - INDEXED: up to 48 children with characters below 256, a 256-entry byte table
+ *            giving the slot of each character
+ * - DIRECT:  any number of children, pages of 256 child references addressed directly
+ *            by the high and low byte of the character (pages only for the high bytes
+ *            in use, so plain ASCII text needs one page)
+ * It moves up a layout when it fills, and back down when children are removed.
+ *
+ * An index that is reachable from the trie is never changed: the trie changes a copy
+ * and then links the copy in place of the old index, so that threads reading the trie
+ * during an insert do not see an index halfway through a change. A copy of a DIRECT
+ * index shares its pages with the original, and clones a page only the first time it
+ * changes it, so an insert copies the one page it writes rather than all of them.
+ *
+ */
+class ChildIndex {
+
+	/**
+	 * Number of children at which a node gets an index.
+	 */
+	static final int MIN_CHILDREN = 5;
+
+	/**
+	 * Index layouts.
+	 */
+	private static final int SORTED = 0, INDEXED = 1, DIRECT = 2;
+
+	/**
+	 * Maximum number of children of the SORTED and INDEXED layouts.
+	 */
+	private static final int SORTED_MAX = 16, INDEXED_MAX = 48;
+
+	/**
+	 * Current layout.
+	 */
+	private int kind;
+
+	/**
+	 * Number of children in the index.
+	 */
+	private int size;
+
+	/**
+	 * SORTED: keys in order, with the child for each key in nodes.
+	 * INDEXED: key of each slot, with the child for each slot in nodes.
+	 */
+	private char[] keys;
+	private TrieNode[] nodes;
+
+	/**
+	 * INDEXED: slot of each character plus one, 0 for none.
+	 */
+	private byte[] slots;
+
+	/**
+	 * DIRECT: children by high byte, then low byte of the character.
+	 */
+	private TrieNode[][] pages;
+
+	/**
+	 * DIRECT: bit set of the pages this index created or cloned, which it may write in
+	 * place; the others are shared with the index it was copied from.
+	 */
+	private long[] ownPages;
+
+	/**
+	 * Initializes an empty index, in the SORTED layout.
+	 */
+	ChildIndex() {
+		toSorted();
+	}
+
+	/**
+	 * Returns a copy of this index, which can be changed without affecting this one. The
+	 * DIRECT pages are shared until the copy changes them, so this index must not be
+	 * changed once it has been copied.
+	 *
+	 * @return Copy of this index
+	 */
+	ChildIndex copy() {
+		ChildIndex index = new ChildIndex();
+		index.kind = kind;
+		index.size = size;
+		index.keys = keys == null ? null : keys.clone();
+		index.nodes = nodes == null ? null : nodes.clone();
+		index.slots = slots == null ? null : slots.clone();
+		if (pages != null) {
+			index.pages = pages.clone();
+			index.ownPages = new long[4];
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the number of children in this index.
+	 *
+	 * @return Number of children
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Estimates the heap memory this index takes, in bytes, on a 64-bit JVM with
+	 * compressed references: 12-byte object headers, 16-byte array headers, 4-byte
+	 * references, and sizes rounded up to multiples of 8.
+	 *
+	 * @return Bytes of this index and its arrays
+	 */
+	long sizeInBytes() {
+		long bytes = align(12 + 4 + 4 + 4*4);
+		if (keys != null) {
+			bytes += align(16 + 2L*keys.length);
+		}
+		if (nodes != null) {
+			bytes += align(16 + 4L*nodes.length);
+		}
+		if (slots != null) {
+			bytes += align(16 + slots.length);
+		}
+		if (pages != null) {
+			bytes += align(16 + 4L*pages.length) + align(16 + 8L*ownPages.length);
+			for (TrieNode[] page : pages) {
+				if (page != null) {
+					bytes += align(16 + 4L*page.length);
+				}
+			}
+		}
+		return bytes;
+	}
+
+	private static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+
+	/**
+	 * Finds the child whose substring starts with a character.
+	 *
+	 * @param c First character of the child
+	 * @return The child, or null if there is none
+	 */
+	TrieNode get(char c) {
+		if (kind == SORTED) {
+			int i = Arrays.binarySearch(keys, 0, size, c);
+			return i < 0 ? null : nodes[i];
+		} else if (kind == INDEXED) {
+			return c < 256 && slots[c] != 0 ? nodes[slots[c]-1] : null;
+		} else {
+			TrieNode[] page = pages[c >>> 8];
+			return page == null ? null : page[c & 0xff];
+		}
+	}
+
+	/**
+	 * Finds the child with the largest first character below a given one, which is the
+	 * child a new child starting with that character goes after in the sibling list.
+	 *
+	 * @param c First character of the new child
+	 * @return The child, or null if every child starts with a larger character
+	 */
+	TrieNode before(char c) {
+		if (kind == SORTED) {
+			int i = Arrays.binarySearch(keys, 0, size, c);
+			i = (i < 0) ? -(i+1) : i; //first key not below c
+			return i == 0 ? null : nodes[i-1];
+		} else if (kind == INDEXED) {
+			for (int k=Math.min(c, 256)-1; k >= 0; k--) {
+				if (slots[k] != 0) {
+					return nodes[slots[k]-1];
+				}
+			}
+			return null;
+		} else {
+			int hi = c >>> 8;
+			for (int lo=(c & 0xff)-1; hi >= 0; hi--, lo=255) {
+				TrieNode[] page = pages[hi];
+				if (page == null) {
+					continue;
+				}
+				for (; lo >= 0; lo--) {
+					if (page[lo] != null) {
+						return page[lo];
+					}
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Sets the child for a character, adding it if there was none.
+	 *
+	 * @param c First character of the child
+	 * @param node The child
+	 */
+	void put(char c, TrieNode node) {
+		if (kind == SORTED) {
+			int i = Arrays.binarySearch(keys, 0, size, c);
+			if (i >= 0) {
+				nodes[i] = node;
+				return;
+			}
+			if (size == SORTED_MAX) {
+				grow(c);
+				put(c, node);
+				return;
+			}
+			i = -(i+1);
+			System.arraycopy(keys, i, keys, i+1, size-i);
+			System.arraycopy(nodes, i, nodes, i+1, size-i);
+			keys[i] = c;
+			nodes[i] = node;
+			size++;
+		} else if (kind == INDEXED) {
+			if (c < 256 && slots[c] != 0) {
+				nodes[slots[c]-1] = node;
+				return;
+			}
+			if (c >= 256 || size == INDEXED_MAX) {
+				grow(c);
+				put(c, node);
+				return;
+			}
+			keys[size] = c;
+			nodes[size] = node;
+			slots[c] = (byte)(++size);
+		} else {
+			TrieNode[] page = writablePage(c >>> 8);
+			if (page[c & 0xff] == null) {
+				size++;
+			}
+			page[c & 0xff] = node;
+		}
+	}
+
+	/**
+	 * Removes the child for a character, if there is one.
+	 *
+	 * @param c First character of the child
+	 */
+	void remove(char c) {
+		if (get(c) == null) {
+			return;
+		}
+		if (kind == SORTED) {
+			int i = Arrays.binarySearch(keys, 0, size, c);
+			System.arraycopy(keys, i+1, keys, i, size-i-1);
+			System.arraycopy(nodes, i+1, nodes, i, size-i-1);
+			nodes[--size] = null;
+		} else if (kind == INDEXED) {
+			// move the last slot into the freed one
+			int i = slots[c]-1;
+			size--;
+			keys[i] = keys[size];
+			nodes[i] = nodes[size];
+			slots[keys[i]] = (byte)(i+1);
+			nodes[size] = null;
+			slots[c] = 0;
+		} else {
+			writablePage(c >>> 8)[c & 0xff] = null;
+			size--;
+		}
+		shrink();
+	}
+
+	/**
+	 * Returns the DIRECT page for a high byte, ready to be written: a new page if there
+	 * is none, and a clone of it if it is shared with another index.
+	 */
+	private TrieNode[] writablePage(int hi) {
+		TrieNode[] page = pages[hi];
+		if (page == null) {
+			page = new TrieNode[256];
+		} else if ((ownPages[hi >>> 6] & (1L << hi)) == 0) {
+			page = page.clone();
+		} else {
+			return page;
+		}
+		pages[hi] = page;
+		ownPages[hi >>> 6] |= 1L << hi;
+		return page;
+	}
+
+	/**
+	 * Moves to the next larger layout, for a new character c that does not fit.
+	 */
+	private void grow(char c) {
+		char[] oldKeys = new char[size];
+		TrieNode[] oldNodes = new TrieNode[size];
+		entries(oldKeys, oldNodes);
+		boolean latin = c < 256;
+		for (int i=0; i < oldKeys.length && latin; i++) {
+			latin = oldKeys[i] < 256;
+		}
+		if (kind == SORTED && latin) {
+			toIndexed();
+		} else {
+			toDirect();
+		}
+		for (int i=0; i < oldKeys.length; i++) {
+			put(oldKeys[i], oldNodes[i]);
+		}
+	}
+
+	/**
+	 * Moves to a smaller layout once the children fit in it with some room to spare,
+	 * so that a node does not flip between layouts on every add and remove.
+	 */
+	private void shrink() {
+		int newKind = kind;
+		if (kind != SORTED && size <= SORTED_MAX - 4) {
+			newKind = SORTED;
+		} else if (kind == DIRECT && size <= INDEXED_MAX - 12) {
+			newKind = INDEXED;
+		}
+		if (newKind == kind) {
+			return;
+		}
+		char[] oldKeys = new char[size];
+		TrieNode[] oldNodes = new TrieNode[size];
+		entries(oldKeys, oldNodes);
+		if (newKind == INDEXED && oldKeys[size-1] >= 256) {
+			return; //not all characters fit the byte table
+		}
+		if (newKind == SORTED) {
+			toSorted();
+		} else {
+			toIndexed();
+		}
+		for (int i=0; i < oldKeys.length; i++) {
+			put(oldKeys[i], oldNodes[i]);
+		}
+	}
+
+	/**
+	 * Copies the keys (in character order) and children of this index into the given arrays.
+	 */
+	private void entries(char[] outKeys, TrieNode[] outNodes) {
+		int n = 0;
+		if (kind == SORTED) {
+			System.arraycopy(keys, 0, outKeys, 0, size);
+			System.arraycopy(nodes, 0, outNodes, 0, size);
+		} else if (kind == INDEXED) {
+			for (int c=0; c < 256; c++) {
+				if (slots[c] != 0) {
+					outKeys[n] = (char)c;
+					outNodes[n++] = nodes[slots[c]-1];
+				}
+			}
+		} else {
+			for (int hi=0; hi < pages.length; hi++) {
+				if (pages[hi] == null) {
+					continue;
+				}
+				for (int lo=0; lo < 256; lo++) {
+					if (pages[hi][lo] != null) {
+						outKeys[n] = (char)((hi << 8) | lo);
+						outNodes[n++] = pages[hi][lo];
+					}
+				}
+			}
+		}
+	}
+
+	private void toSorted() {
+		kind = SORTED;
+		size = 0;
+		keys = new char[SORTED_MAX];
+		nodes = new TrieNode[SORTED_MAX];
+		slots = null;
+		pages = null;
+		ownPages = null;
+	}
+
+	private void toIndexed() {
+		kind = INDEXED;
+		size = 0;
+		keys = new char[INDEXED_MAX];
+		nodes = new TrieNode[INDEXED_MAX];
+		slots = new byte[256];
+		pages = null;
+		ownPages = null;
+	}
+
+	private void toDirect() {
+		kind = DIRECT;
+		size = 0;
+		keys = null;
+		nodes = null;
+		slots = null;
+		pages = new TrieNode[256][];
+		ownPages = new long[4];
+	}
+
+}
@@ -0,0 +1,349 @@
+package structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class implements a compressed trie that many threads can insert words into at
+ * the same time, with no locks, e.g. to load words from several input partitions at
+ * once. Trie serializes its inserts; here, inserts only get in each other's way when
+ * they change the same node at the same moment, so writers working on different parts
+ * of the key space (say, words with different first letters) run side by side. Readers
+ * (contains, completionList) never wait either. Words cannot be removed.
+ *
+ * Words go into an append-only WordLog, and nodes refer to them by id, as in Trie. A
+ * node's substring is taken from its word, but only its end index is kept: the
+ * substring starts just after the end of its parent's, which is what makes edge splits
+ * safe. The children of a node are an immutable table of first characters and nodes,
+ * sorted by character, and every change to the trie is a single compare-and-set of one
+ * node's table from the one the writer read to a new one:
+ *
+ * - a new child goes into a copy of the table with it added
+ * - a child whose substring the word leaves partway through is split by putting a new
+ *   node, holding the characters before the split, in its place in a copy of the
+ *   table; the child itself, with its children, becomes a child of the new node and
+ *   is not changed, since its substring now starts after the new node's
+ *
+ * A node's end index and word never change after it is linked in, so a reader that is
+ * on a node while it is split still reads the substring it had before, and another
+ * writer inserting below the split node at the same time is not lost. If a writer's
+ * compare-and-set fails, another writer changed the same table first, and it retries
+ * at the same node with the new table. A word that ends at an existing node is added by
+ * a compare-and-set of the node's word id, so two writers inserting the same word
+ * cannot both add it.
+ *
+ * The cost is a copy of a node's table per change to it, which is small next to the
+ * walk down for any node but one with thousands of children.
+ *
+ */
+public class ConcurrentTrie {
+
+	/**
+	 * Word id of a node no word ends at.
+	 */
+	private static final int NONE = -1;
+
+	/**
+	 * Node of the trie. The root holds no substring (end -1, no word).
+	 */
+	static final class Node {
+
+		/**
+		 * Id of a word the node's substring is taken from (one that goes through it).
+		 */
+		final int wordIndex;
+
+		/**
+		 * Index of the last character of the substring in that word. The substring
+		 * starts at the parent's end + 1.
+		 */
+		final int end;
+
+		/**
+		 * Id of the word that ends at this node, NONE if no word does. Only goes from
+		 * NONE to an id.
+		 */
+		volatile int word = NONE;
+
+		/**
+		 * Children, null if there are none.
+		 */
+		volatile Children children;
+
+		Node(int wordIndex, int end) {
+			this.wordIndex = wordIndex;
+			this.end = end;
+		}
+	}
+
+	/**
+	 * Immutable table of a node's children, sorted by first character.
+	 */
+	static final class Children {
+
+		final char[] keys;
+		final Node[] nodes;
+
+		Children(char[] keys, Node[] nodes) {
+			this.keys = keys;
+			this.nodes = nodes;
+		}
+
+		/**
+		 * Returns a copy of this table with a child added at a slot (found by
+		 * binarySearch), or a table with only the child if this one is null.
+		 */
+		static Children with(Children table, int slot, char key, Node node) {
+			if (table == null) {
+				return new Children(new char[] {key}, new Node[] {node});
+			}
+			int size = table.keys.length;
+			char[] keys = new char[size + 1];
+			Node[] nodes = new Node[size + 1];
+			System.arraycopy(table.keys, 0, keys, 0, slot);
+			System.arraycopy(table.nodes, 0, nodes, 0, slot);
+			keys[slot] = key;
+			nodes[slot] = node;
+			System.arraycopy(table.keys, slot, keys, slot + 1, size - slot);
+			System.arraycopy(table.nodes, slot, nodes, slot + 1, size - slot);
+			return new Children(keys, nodes);
+		}
+
+		/**
+		 * Returns a copy of this table with the child at a slot replaced.
+		 */
+		Children replacing(int slot, Node node) {
+			Node[] copy = nodes.clone();
+			copy[slot] = node;
+			return new Children(keys, copy);
+		}
+	}
+
+	private static final AtomicReferenceFieldUpdater<Node,Children> CHILDREN =
+			AtomicReferenceFieldUpdater.newUpdater(Node.class, Children.class, "children");
+
+	private static final AtomicIntegerFieldUpdater<Node> WORD =
+			AtomicIntegerFieldUpdater.newUpdater(Node.class, "word");
+
+	/**
+	 * Words of this trie, by id.
+	 */
+	final WordLog words;
+
+	/**
+	 * Root node of this trie.
+	 */
+	final Node root;
+
+	/**
+	 * Number of words in the trie.
+	 */
+	private final LongAdder size;
+
+	/**
+	 * Initializes an empty trie.
+	 */
+	public ConcurrentTrie() {
+		words = new WordLog();
+		root = new Node(NONE, -1);
+		size = new LongAdder();
+	}
+
+	/**
+	 * Returns the number of words in this trie. While inserts are going on, the count is
+	 * of some of them, and may miss ones that finished during the call.
+	 *
+	 * @return Number of words
+	 */
+	public int size() {
+		return size.intValue();
+	}
+
+	/**
+	 * Inserts a word, converted to lower case and trimmed. Can be called from any
+	 * number of threads at once. The word is appended to the word log the first time the
+	 * insert needs it for a new node; an insert that then finds another thread added the
+	 * same word first leaves that id unused.
+	 *
+	 * @param word Word to insert
+	 * @return True if the word was added, false if it was already in the trie (or empty)
+	 */
+	public boolean insertWord(String word) {
+		word = word.toLowerCase().trim();
+		int length = word.length();
+		if (length == 0) {
+			return false;
+		}
+
+		int id = NONE; //word's id, once appended
+		Node parent = root;
+		int pos = 0; //index of the word's next character, parent.end + 1
+		while (true) {
+			Children table = parent.children;
+			char c = word.charAt(pos);
+			int slot = (table == null) ? -1 : Arrays.binarySearch(table.keys, c);
+
+			// No child starts with c -> new leaf
+			if (slot < 0) {
+				if (id == NONE) {
+					id = words.append(word);
+				}
+				Node leaf = new Node(id, length - 1);
+				leaf.word = id;
+				if (CHILDREN.compareAndSet(parent, table, Children.with(table, -slot - 1, c, leaf))) {
+					size.increment();
+					return true;
+				}
+				continue; //table changed -> try again with the new one
+			}
+
+			// Matching the child's substring past its first character
+			Node child = table.nodes[slot];
+			String existing = words.get(child.wordIndex);
+			int k = pos + 1;
+			while (k <= child.end && k < length && existing.charAt(k) == word.charAt(k)) {
+				k++;
+			}
+
+			// Whole substring matches
+			if (k > child.end) {
+
+				// Word ends at the child -> it becomes a word, unless it already is one
+				if (k == length) {
+					if (child.word != NONE) {
+						return false;
+					}
+					if (id == NONE) {
+						id = words.append(word);
+					}
+					if (WORD.compareAndSet(child, NONE, id)) {
+						size.increment();
+						return true;
+					}
+					return false; //another thread added the same word
+				}
+				parent = child;
+				pos = k;
+				continue;
+			}
+
+			// Word leaves or ends inside the substring -> new node for the characters
+			// before k, with the child (from k on) under it
+			if (id == NONE) {
+				id = words.append(word);
+			}
+			Node split = new Node(id, k - 1);
+			char childKey = existing.charAt(k);
+			if (k == length) {
+				split.word = id;
+				split.children = Children.with(null, 0, childKey, child);
+			} else {
+				char leafKey = word.charAt(k);
+				Node leaf = new Node(id, length - 1);
+				leaf.word = id;
+				split.children = Children.with(Children.with(null, 0, childKey, child),
+						leafKey < childKey ? 0 : 1, leafKey, leaf);
+			}
+			if (CHILDREN.compareAndSet(parent, table, table.replacing(slot, split))) {
+				size.increment();
+				return true;
+			}
+			//table changed -> try again with the new one
+		}
+	}
+
+	/**
+	 * Finds the node a prefix ends in: the one whose substring holds the prefix's last
+	 * character.
+	 *
+	 * @return The node, or null if no word starts with the prefix
+	 */
+	private Node find(String prefix) {
+		int length = prefix.length();
+		Node node = root;
+		int pos = 0;
+		while (pos < length) {
+			Children table = node.children;
+			int slot = (table == null) ? -1 : Arrays.binarySearch(table.keys, prefix.charAt(pos));
+			if (slot < 0) {
+				return null;
+			}
+			node = table.nodes[slot];
+			String existing = words.get(node.wordIndex);
+			for (pos++; pos <= node.end && pos < length; pos++) {
+				if (existing.charAt(pos) != prefix.charAt(pos)) {
+					return null;
+				}
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Tells whether a word is in this trie.
+	 *
+	 * @param word Word to look for (converted to lower case and trimmed)
+	 * @return True if the word is in the trie
+	 */
+	public boolean contains(String word) {
+		word = word.toLowerCase().trim();
+		Node node = find(word);
+		return node != null && node != root && node.end == word.length() - 1 && node.word != NONE;
+	}
+
+	/**
+	 * Given a prefix, returns the words in this trie that start with it, in sorted order.
+	 * Words inserted during the call may or may not be in the list.
+	 *
+	 * @param prefix Prefix to be completed (converted to lower case and trimmed)
+	 * @return Words that start with the prefix, or null if there are none
+	 */
+	public ArrayList<String> completionList(String prefix) {
+		prefix = prefix.toLowerCase().trim();
+		Node node = prefix.isEmpty() ? null : find(prefix);
+		if (node == null) {
+			return null;
+		}
+		ArrayList<String> compList = new ArrayList<String>();
+		addWords(node, compList);
+		return compList.isEmpty() ? null : compList;
+	}
+
+	/**
+	 * Adds the words at and under a node, in sorted order: a node's own word comes before
+	 * the words under it, which it is a prefix of.
+	 */
+	private void addWords(Node node, ArrayList<String> out) {
+		ArrayList<Node> stack = new ArrayList<Node>();
+		stack.add(node);
+		while (!stack.isEmpty()) {
+			Node ptr = stack.remove(stack.size() - 1);
+			int word = ptr.word;
+			if (word != NONE) {
+				out.add(words.get(word));
+			}
+			Children table = ptr.children;
+			if (table != null) {
+				for (int i=table.nodes.length-1; i >= 0; i--) {
+					stack.add(table.nodes[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds a Trie with the words of this one (see Trie.buildFromSorted), e.g. to serve
+	 * queries once loading is done. Inserts made during the call may or may not be in it.
+	 *
+	 * @return Trie with the same words
+	 */
+	public Trie toTrie() {
+		ArrayList<String> all = new ArrayList<String>();
+		addWords(root, all);
+		return Trie.buildFromSorted(all);
+	}
+
+}
@@ -0,0 +1,419 @@
+package structures;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+/**
+ * This class is a directed acyclic word graph (DAWG): a trie in which nodes with the
+ * same set of endings are merged into one, so that common suffixes ("-ing", "-tion",
+ * "-ness") are stored once instead of once per branch, as well as common prefixes. It
+ * answers the same queries as Trie (completionList, completions, countWithPrefix) plus
+ * contains, and is read-only once built.
+ *
+ * Each node (state) has one outgoing edge per character, in sorted order, and is marked
+ * if a word ends there, so a word may be a prefix of another. The graph is built from
+ * sorted words in a single pass, minimizing as it goes (Daciuk et al., "Incremental
+ * construction of minimal acyclic finite-state automata", 2000): once a word has been
+ * added, the nodes of the previous word's path below the branching point can get no more
+ * edges, so each is replaced by an equal node already in the graph, or registered as a
+ * new one. Only the path of the latest word is ever unminimized.
+ *
+ */
+public class Dawg {
+
+	/**
+	 * Start node; words are the paths from it to marked nodes.
+	 */
+	private State root;
+
+	/**
+	 * Number of nodes, including the root.
+	 */
+	private int nodeCount;
+
+	private Dawg() {
+		root = new State();
+	}
+
+	/**
+	 * Builds a DAWG from words in sorted order. Words are converted to lower case and
+	 * trimmed, as in Trie.insertWord; duplicates and empty words are skipped.
+	 *
+	 * @param sortedWords Words in sorted order (after lower case conversion)
+	 * @return DAWG with all the words
+	 * @throws IllegalArgumentException If the words are not in sorted order
+	 */
+	public static Dawg buildFromSorted(Iterable<String> sortedWords) {
+		Dawg dawg = new Dawg();
+		HashMap<State,State> register = new HashMap<State,State>();
+		State[] path = new State[16]; //path of the previous word, path[0] is the root
+		path[0] = dawg.root;
+		String prevWord = "";
+
+		for (String word : sortedWords) {
+			word = word.toLowerCase().trim();
+			int order = word.compareTo(prevWord);
+			if (order == 0 || word.length() == 0) {
+				continue;
+			}
+			if (order < 0) {
+				throw new IllegalArgumentException("Words are not sorted: " + prevWord + " before " + word);
+			}
+
+			// Longest common prefix with the previous word -> the rest of its path is final
+			int lcp = 0;
+			int max = Math.min(word.length(), prevWord.length());
+			while (lcp < max && word.charAt(lcp) == prevWord.charAt(lcp)) {
+				lcp++;
+			}
+			minimize(register, path, prevWord.length(), lcp);
+
+			// Rest of the word as a new chain of nodes
+			if (path.length <= word.length()) {
+				State[] newPath = new State[Math.max(path.length * 2, word.length() + 1)];
+				System.arraycopy(path, 0, newPath, 0, path.length);
+				path = newPath;
+			}
+			for (int i=lcp; i < word.length(); i++) {
+				path[i+1] = new State();
+				path[i].add(word.charAt(i), path[i+1]);
+			}
+			path[word.length()].terminal = true;
+			prevWord = word;
+		}
+
+		minimize(register, path, prevWord.length(), 0);
+		dawg.root.finish();
+		dawg.nodeCount = register.size() + 1;
+		return dawg;
+	}
+
+	/**
+	 * Builds a DAWG from a words file in the format read by TrieApp: the number of words
+	 * on the first line, then one word per line. The words are sorted first unless they
+	 * already are.
+	 *
+	 * @param wordsFile File with the words
+	 * @return DAWG with all the words
+	 * @throws IOException If the file cannot be read
+	 */
+	public static Dawg buildFromSortedFile(File wordsFile)
+	throws IOException {
+		Scanner sc = new Scanner(wordsFile);
+		int numWords = sc.nextInt();
+		ArrayList<String> fileWords = new ArrayList<String>(numWords);
+		boolean sorted = true;
+		for (int i=0; i < numWords; i++) {
+			String word = sc.next().toLowerCase().trim();
+			if (!fileWords.isEmpty() && word.compareTo(fileWords.get(fileWords.size()-1)) < 0) {
+				sorted = false;
+			}
+			fileWords.add(word);
+		}
+		sc.close();
+		if (!sorted) {
+			Collections.sort(fileWords);
+		}
+		return buildFromSorted(fileWords);
+	}
+
+	/**
+	 * Replaces the nodes of the previous word's path below depth downTo, deepest first,
+	 * by the equal node in the register if there is one, and registers them otherwise.
+	 * Their children are already registered, so two nodes are equal if they have the same
+	 * mark and the same edges to the same nodes.
+	 *
+	 * @param length Length of the previous word (its path is path[0..length])
+	 */
+	private static void minimize(HashMap<State,State> register, State[] path, int length, int downTo) {
+		for (int i=length; i > downTo; i--) {
+			State node = path[i];
+			node.finish();
+			State same = register.get(node);
+			if (same != null) {
+				path[i-1].targets[path[i-1].size - 1] = same; //node is the parent's last edge
+			} else {
+				register.put(node, node);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of nodes in this DAWG, including the root.
+	 *
+	 * @return Number of nodes
+	 */
+	public int nodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Returns the number of words in this DAWG.
+	 *
+	 * @return Number of words
+	 */
+	public int wordCount() {
+		return root.count;
+	}
+
+	/**
+	 * Tells whether a word is in this DAWG.
+	 *
+	 * @param word Word to look for (converted to lower case and trimmed)
+	 * @return True if the word is in the DAWG
+	 */
+	public boolean contains(String word) {
+		State node = find(word.toLowerCase().trim());
+		return node != null && node != root && node.terminal;
+	}
+
+	/**
+	 * Given a string prefix, returns its "completion list", i.e. all the words in the
+	 * DAWG that start with this prefix, in sorted order (a word comes before the longer
+	 * words it is a prefix of). Same as Trie.completionList.
+	 *
+	 * @param prefix Prefix to be completed with words in the DAWG
+	 * @return List of all words that start with the prefix, in sorted order.
+	 *         If there is no word that has this prefix, null is returned.
+	 */
+	public ArrayList<String> completionList(String prefix) {
+		Iterator<String> words = completions(prefix);
+		if (!words.hasNext()) {
+			return null;
+		}
+		ArrayList<String> compList = new ArrayList<String>();
+		while (words.hasNext()) {
+			compList.add(words.next());
+		}
+		return compList;
+	}
+
+	/**
+	 * Given a string prefix, returns an iterator over its completion list, which walks the
+	 * DAWG only as far as the next word on each call.
+	 *
+	 * @param prefix Prefix to be completed with words in the DAWG
+	 * @return Iterator over all words that start with the prefix, in the same order as
+	 *         completionList (no words if there is no word that has this prefix)
+	 */
+	public Iterator<String> completions(String prefix) {
+		prefix = prefix.toLowerCase().trim();
+		State node = find(prefix);
+		return new CompletionIterator(node == root ? null : node, prefix);
+	}
+
+	/**
+	 * Given a string prefix, returns the number of words in the DAWG that start with it.
+	 * Every node keeps the number of words below it (the same for every path into it), so
+	 * this only walks down to the prefix.
+	 *
+	 * @param prefix Prefix to be completed with words in the DAWG
+	 * @return Number of words that start with the prefix (0 if there are none)
+	 */
+	public int countWithPrefix(String prefix) {
+		State node = find(prefix.toLowerCase().trim());
+		return (node == null || node == root) ? 0 : node.count;
+	}
+
+	/**
+	 * Follows the edges for the characters of a string from the root.
+	 *
+	 * @param s String (already converted to lower case and trimmed)
+	 * @return Node reached, or null if there is no such path
+	 */
+	private State find(String s) {
+		State node = root;
+		for (int i=0; i < s.length() && node != null; i++) {
+			node = node.child(s.charAt(i));
+		}
+		return node;
+	}
+
+	/**
+	 * Node of the graph: edges in sorted order of character, as parallel arrays.
+	 */
+	private static class State {
+
+		private static final char[] NO_LABELS = new char[0];
+		private static final State[] NO_TARGETS = new State[0];
+
+		char[] labels = NO_LABELS;
+		State[] targets = NO_TARGETS;
+		int size;
+
+		/**
+		 * True if a word ends at this node.
+		 */
+		boolean terminal;
+
+		/**
+		 * Number of words below this node (counting one if a word ends here), set by finish.
+		 */
+		int count;
+
+		/**
+		 * Hash of the mark and the edges, set by finish.
+		 */
+		private int hash;
+
+		/**
+		 * Adds an edge after the others (characters come in sorted order while building).
+		 */
+		void add(char c, State target) {
+			if (size == labels.length) {
+				int capacity = Math.max(2, size * 2);
+				char[] newLabels = new char[capacity];
+				State[] newTargets = new State[capacity];
+				System.arraycopy(labels, 0, newLabels, 0, size);
+				System.arraycopy(targets, 0, newTargets, 0, size);
+				labels = newLabels;
+				targets = newTargets;
+			}
+			labels[size] = c;
+			targets[size] = target;
+			size++;
+		}
+
+		/**
+		 * Called once the node can get no more edges (its children are final): trims the
+		 * edge arrays, and sets the word count and hash.
+		 */
+		void finish() {
+			if (labels.length != size) {
+				char[] newLabels = new char[size];
+				State[] newTargets = new State[size];
+				System.arraycopy(labels, 0, newLabels, 0, size);
+				System.arraycopy(targets, 0, newTargets, 0, size);
+				labels = newLabels;
+				targets = newTargets;
+			}
+			count = terminal ? 1 : 0;
+			hash = terminal ? 1 : 0;
+			for (int i=0; i < size; i++) {
+				count += targets[i].count;
+				hash = 31 * (31 * hash + labels[i]) + System.identityHashCode(targets[i]);
+			}
+		}
+
+		/**
+		 * Finds the target of the edge for a character, by binary search.
+		 *
+		 * @return Target, or null if there is no such edge
+		 */
+		State child(char c) {
+			int low = 0, high = size - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				if (labels[middle] < c) {
+					low = middle + 1;
+				} else if (labels[middle] > c) {
+					high = middle - 1;
+				} else {
+					return targets[middle];
+				}
+			}
+			return null;
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object o) {
+			State other = (State)o;
+			if (terminal != other.terminal || size != other.size || hash != other.hash) {
+				return false;
+			}
+			for (int i=0; i < size; i++) {
+				if (labels[i] != other.labels[i] || targets[i] != other.targets[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Iterator over the words below a node, depth first in order of character. Keeps the
+	 * path from that node to the current one, with the next edge to take at each node.
+	 */
+	private static class CompletionIterator implements Iterator<String> {
+
+		private State[] states = new State[16];
+		private int[] nextEdge = new int[16];
+		private int depth;
+
+		/**
+		 * Characters of the current path, the prefix first.
+		 */
+		private StringBuilder path;
+
+		/**
+		 * Next word to return, null if not found yet or no more words.
+		 */
+		private String nextWord;
+
+		CompletionIterator(State start, String prefix) {
+			path = new StringBuilder(prefix);
+			if (start != null) {
+				states[0] = start;
+				depth = 1;
+				if (start.terminal) {
+					nextWord = prefix;
+				}
+			}
+		}
+
+		public boolean hasNext() {
+			while (nextWord == null && depth > 0) {
+				State node = states[depth-1];
+				int edge = nextEdge[depth-1];
+
+				// All edges taken -> back up
+				if (edge == node.size) {
+					depth--;
+					if (depth > 0) {
+						path.setLength(path.length() - 1);
+					}
+					continue;
+				}
+
+				// Next edge -> down to its target
+				nextEdge[depth-1]++;
+				State child = node.targets[edge];
+				path.append(node.labels[edge]);
+				if (depth == states.length) {
+					State[] newStates = new State[depth * 2];
+					int[] newNextEdge = new int[depth * 2];
+					System.arraycopy(states, 0, newStates, 0, depth);
+					System.arraycopy(nextEdge, 0, newNextEdge, 0, depth);
+					states = newStates;
+					nextEdge = newNextEdge;
+				}
+				states[depth] = child;
+				nextEdge[depth] = 0;
+				depth++;
+				if (child.terminal) {
+					nextWord = path.toString();
+				}
+			}
+			return nextWord != null;
+		}
+
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			String word = nextWord;
+			nextWord = null;
+			return word;
+		}
+	}
+
+}
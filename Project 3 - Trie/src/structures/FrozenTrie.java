@@ -0,0 +1,330 @@
+package structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class is a read-only copy of a Trie in a succinct encoding, for dictionaries
+ * that are built once and then only queried. The shape of the trie is a LOUDS bit
+ * vector (level-order unary degree sequence): the nodes are numbered in breadth first
+ * order, and each node's number of children is written in unary, as that many 1 bits
+ * followed by a 0, after a leading "10" for the root. Node i is the i-th 1 bit, so with
+ * rank and select on the bits (see BitVector):
+ *
+ * children of node i     - start right after the i-th 0 bit, at p = select0(i) + 1
+ * first child of node i  - rank1(p) = p - i - 1, if the bit at p is 1 (otherwise i is a leaf)
+ * children are numbered one after the other, up to the next 0 bit
+ *
+ * which is about 2 bits per node, against two references per TrieNode. The substrings
+ * of the nodes (edge labels) are stored one after the other in breadth first order, in
+ * bytes if every character fits in one, with a second bit vector marking where each
+ * label starts. Words are spelled out from the labels on the way down, so neither
+ * the words nor the word registry are kept. A third bit vector has a bit per node,
+ * set if a word ends there (every leaf, and internal nodes whose word is a prefix of
+ * others).
+ *
+ * Siblings are in the trie's order, sorted by first character, so a child is found by
+ * binary search over the first characters of a node's children. Since siblings' labels
+ * and runs of children follow one another, completionList finds them by select only
+ * for the first child of each node, and for the others goes on from where the last
+ * sibling's end.
+ *
+ */
+public class FrozenTrie {
+
+	/**
+	 * Shape of the trie.
+	 */
+	private BitVector louds;
+
+	/**
+	 * A 1 bit at the first character of each label, in node order from node 1 (the root has none).
+	 */
+	private BitVector labelStarts;
+
+	/**
+	 * A 1 bit for each node a word ends at, in node order.
+	 */
+	private BitVector terminals;
+
+	/**
+	 * Characters of all labels, in bytes if they all fit in one (wideLabels is null),
+	 * otherwise in chars (byteLabels is null).
+	 */
+	private byte[] byteLabels;
+	private char[] wideLabels;
+
+	/**
+	 * Number of nodes (including the root) and of words.
+	 */
+	private int nodeCount, wordCount;
+
+	/**
+	 * Encodes a trie. The trie cannot be changed while it is being encoded.
+	 *
+	 * @param trie Trie to encode
+	 */
+	FrozenTrie(Trie trie) {
+		synchronized (trie) {
+
+			// Nodes in breadth first order: each node's children in unary, and its label
+			ArrayList<TrieNode> order = new ArrayList<TrieNode>();
+			StringBuilder labels = new StringBuilder();
+			louds = new BitVector(1024);
+			labelStarts = new BitVector(1024);
+			terminals = new BitVector(1024);
+			louds.add(true);
+			louds.add(false);
+			order.add(trie.root);
+			for (int i=0; i < order.size(); i++) {
+				TrieNode node = order.get(i);
+				if (node != trie.root) {
+					String word = trie.words.get(node.substr.wordIndex);
+					for (int pos=node.substr.startIndex; pos <= node.substr.endIndex; pos++) {
+						labelStarts.add(pos == node.substr.startIndex);
+						labels.append(word.charAt(pos));
+					}
+				}
+				terminals.add(node.terminal);
+				if (node.terminal) {
+					wordCount++;
+				}
+				for (TrieNode ptr=node.firstChild; ptr != null; ptr=ptr.sibling) {
+					order.add(ptr);
+					louds.add(true);
+				}
+				louds.add(false);
+			}
+			nodeCount = order.size();
+			louds.freeze();
+			labelStarts.freeze();
+			terminals.freeze();
+
+			boolean narrow = true;
+			for (int i=0; i < labels.length() && narrow; i++) {
+				narrow = labels.charAt(i) <= 0xff;
+			}
+			if (narrow) {
+				byteLabels = new byte[labels.length()];
+				for (int i=0; i < byteLabels.length; i++) {
+					byteLabels[i] = (byte)labels.charAt(i);
+				}
+			} else {
+				wideLabels = labels.toString().toCharArray();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of nodes in this trie, including the root.
+	 *
+	 * @return Number of nodes
+	 */
+	public int nodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Returns the number of words in this trie.
+	 *
+	 * @return Number of words
+	 */
+	public int wordCount() {
+		return wordCount;
+	}
+
+	/**
+	 * Returns the memory taken by the encoding (the bit vectors with their rank and
+	 * select directories, and the labels), in bits, not counting object and array headers.
+	 *
+	 * @return Size in bits
+	 */
+	public long sizeInBits() {
+		long labelBits = byteLabels != null ? 8L * byteLabels.length : 16L * wideLabels.length;
+		return louds.sizeInBits() + labelStarts.sizeInBits() + terminals.sizeInBits() + labelBits;
+	}
+
+	/**
+	 * Tells whether a word is in this trie.
+	 *
+	 * @param word Word to look for (converted to lower case and trimmed)
+	 * @return True if the word is in the trie
+	 */
+	public boolean contains(String word) {
+		word = word.toLowerCase().trim();
+		int length = word.length();
+		int node = 0;
+		int pos = 0;
+		while (pos < length) {
+			node = findChild(node, word.charAt(pos));
+			if (node < 0) {
+				return false;
+			}
+			int start = labelStart(node);
+			int end = labelEnd(start);
+			for (int i=start; i < end; i++) {
+				if (pos == length || label(i) != word.charAt(pos)) {
+					return false; //word ends inside the label, or differs from it
+				}
+				pos++;
+			}
+		}
+		return node != 0 && terminals.get(node);
+	}
+
+	/**
+	 * Given a string prefix, returns its "completion list", i.e. all the words in the trie
+	 * that start with this prefix. Same as Trie.completionList, in the same (sorted) order.
+	 *
+	 * @param prefix Prefix to be completed with words in trie
+	 * @return List of all words in tree that start with the prefix, in sorted order.
+	 *         If there is no word in the tree that has this prefix, null is returned.
+	 */
+	public ArrayList<String> completionList(String prefix) {
+		prefix = prefix.toLowerCase().trim();
+		int length = prefix.length();
+		if (length == 0 || wordCount == 0) {
+			return null;
+		}
+
+		// Walk down to the node where the prefix ends, spelling out the path
+		StringBuilder path = new StringBuilder();
+		int node = 0;
+		while (path.length() < length) {
+			node = findChild(node, prefix.charAt(path.length()));
+			if (node < 0) {
+				return null;
+			}
+			int start = labelStart(node);
+			int end = labelEnd(start);
+			for (int i=start; i < end; i++) {
+				char c = label(i);
+				if (path.length() < length && c != prefix.charAt(path.length())) {
+					return null;
+				}
+				path.append(c);
+			}
+		}
+
+		// Collect the words at and under that node, from a stack of (node, length of the path before
+		// its label, start of its label, position of its children) entries; the node itself goes first
+		ArrayList<String> compList = new ArrayList<String>();
+		int[] stack = new int[64];
+		int nodeStart = labelStart(node);
+		stack[0] = node;
+		stack[1] = path.length() - (labelEnd(nodeStart) - nodeStart);
+		stack[2] = nodeStart;
+		stack[3] = childrenAt(node);
+		int top = 4;
+		while (top > 0) {
+			top -= 4;
+			int ptr = stack[top];
+			path.setLength(stack[top+1]);
+			int start = stack[top+2];
+			int end = labelEnd(start);
+			for (int i=start; i < end; i++) {
+				path.append(label(i));
+			}
+			if (terminals.get(ptr)) {
+				compList.add(path.toString());
+			}
+			int at = stack[top+3];
+			int children = childCount(at);
+			if (children > 0) {
+				if (top + 4 * children > stack.length) {
+					stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + 4 * children));
+				}
+				top = pushChildren(firstChild(ptr, at), children, path.length(), stack, top);
+			}
+		}
+		return compList;
+	}
+
+	/**
+	 * Pushes children onto a stack of (node, path length, label start, children position)
+	 * entries, last child first so the first child is popped first. The stack must have
+	 * room for them. Siblings are numbered one after the other, and so are their labels
+	 * and their runs of LOUDS bits, so only the first child's are found by select; each
+	 * next one starts where the last one ends.
+	 *
+	 * @return The new top of the stack
+	 */
+	private int pushChildren(int first, int children, int pathLength, int[] stack, int top) {
+		int start = labelStart(first);
+		int at = childrenAt(first);
+		for (int i=0; i < children; i++) {
+			int entry = top + 4 * (children - 1 - i);
+			stack[entry] = first + i;
+			stack[entry+1] = pathLength;
+			stack[entry+2] = start;
+			stack[entry+3] = at;
+			start = labelEnd(start);
+			at = louds.nextClear(at) + 1;
+		}
+		return top + 4 * children;
+	}
+
+	/**
+	 * Finds the child of a node whose label starts with a character, by binary search.
+	 *
+	 * @return The child, or -1 if there is none
+	 */
+	private int findChild(int node, char c) {
+		int at = childrenAt(node);
+		int low = firstChild(node, at);
+		int high = low + childCount(at) - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			char first = label(labelStart(middle));
+			if (first < c) {
+				low = middle + 1;
+			} else if (first > c) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Position in the LOUDS bits of a node's children (the 0 bit ending them if it has none).
+	 */
+	private int childrenAt(int node) {
+		return louds.select0(node) + 1;
+	}
+
+	/**
+	 * Number of the first child of a node, given the position of its children (only
+	 * meaningful if it has children). The 1 bits before that position are the position
+	 * less the node + 1 0 bits before it, so no rank is needed.
+	 */
+	private static int firstChild(int node, int at) {
+		return at - node - 1;
+	}
+
+	/**
+	 * Number of children of a node, given the position of its children: the 1 bits from
+	 * there up to the next 0 bit, found a word at a time.
+	 */
+	private int childCount(int at) {
+		return louds.nextClear(at) - at;
+	}
+
+	/**
+	 * Index of the first character of a node's label (node 1 or more), and one past its
+	 * last (the start of the next label), given its first.
+	 */
+	private int labelStart(int node) {
+		return labelStarts.select1(node - 1);
+	}
+
+	private int labelEnd(int start) {
+		return labelStarts.nextSet(start + 1);
+	}
+
+	private char label(int i) {
+		return byteLabels != null ? (char)(byteLabels[i] & 0xff) : wideLabels[i];
+	}
+
+}
@@ -0,0 +1,99 @@
+package structures;
+
+/**
+ * This class is an array-backed stack of trie nodes, used to walk the trie without
+ * recursion. Each entry also carries an int (such as the depth of the node), kept in
+ * a parallel array. The arrays grow as needed and are kept when the stack is cleared,
+ * so a stack can be reused for many walks without allocating.
+ *
+ */
+class NodeStack {
+
+	/**
+	 * Nodes on the stack, top at nodes[size - 1], and the int of each entry.
+	 */
+	private TrieNode[] nodes;
+	private int[] values;
+
+	/**
+	 * Number of entries on the stack.
+	 */
+	private int size;
+
+	/**
+	 * Initializes an empty stack.
+	 */
+	NodeStack() {
+		nodes = new TrieNode[32];
+		values = new int[32];
+		size = 0;
+	}
+
+	/**
+	 * Pushes a node, with 0 for its int.
+	 *
+	 * @param node Node to push
+	 */
+	void push(TrieNode node) {
+		push(node, 0);
+	}
+
+	/**
+	 * Pushes a node with its int.
+	 *
+	 * @param node Node to push
+	 * @param value Int that goes with the node
+	 */
+	void push(TrieNode node, int value) {
+		if (size == nodes.length) {
+			TrieNode[] newNodes = new TrieNode[size * 2];
+			int[] newValues = new int[size * 2];
+			System.arraycopy(nodes, 0, newNodes, 0, size);
+			System.arraycopy(values, 0, newValues, 0, size);
+			nodes = newNodes;
+			values = newValues;
+		}
+		nodes[size] = node;
+		values[size] = value;
+		size++;
+	}
+
+	/**
+	 * Returns the int of the top entry. Must be read before pop.
+	 *
+	 * @return Int of the top entry
+	 */
+	int topValue() {
+		return values[size-1];
+	}
+
+	/**
+	 * Removes the top entry.
+	 *
+	 * @return Node of the top entry
+	 */
+	TrieNode pop() {
+		TrieNode node = nodes[--size];
+		nodes[size] = null;
+		return node;
+	}
+
+	/**
+	 * Tells whether the stack is empty.
+	 *
+	 * @return True if there are no entries; false otherwise
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all entries, keeping the arrays for reuse.
+	 */
+	void clear() {
+		while (size > 0) {
+			nodes[--size] = null;
+		}
+	}
+
+}
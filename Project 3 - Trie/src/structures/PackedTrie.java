@@ -0,0 +1,352 @@
+package structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class implements the same compressed trie as Trie, but instead of a TrieNode
+ * object (plus an Indexes object) per node, all nodes are kept in parallel arrays of
+ * primitives, and a node is just an int handle into those arrays:
+ *
+ * wordIndex[n], start[n], end[n] - the Indexes triplet of node n
+ * firstChild[n], sibling[n]      - handles of the first child and sibling of n, -1 for none
+ *
+ * A node's fields take 16 bytes of the arrays this way (plus the room the arrays keep to
+ * grow into, 18 to 25 bytes per node in all; see nodeBytes), where a TrieNode and its
+ * Indexes are two objects with headers and references, estimated at 72 bytes in
+ * TrieStats. TrieBenchmark measures both per node: the node store alone is 3 to 5 times
+ * smaller (79 against 24 bytes per node at 1M words), but with the word registry both
+ * keep (the ids of the words, about 45 bytes per node) the whole trie is only about 2
+ * times smaller (67 against 122 bytes per node). The Trie's nodes also hold weights,
+ * word counts and child indexes, which this class does without. And the nodes visited
+ * while walking down the trie sit next to each other in a handful of arrays.
+ *
+ * Node 0 is the root, which holds no substring.
+ *
+ * As in Trie, a word may be a prefix of another. There is no terminal flag: a word ends
+ * at node n if n's word is no longer than its substring (end[n] is its last index),
+ * since a node's substring is taken from its own word if one ends there, and from a
+ * longer word below it otherwise.
+ *
+ */
+public class PackedTrie {
+
+	/**
+	 * Handle used for "no node".
+	 */
+	private static final int NONE = -1;
+
+	/**
+	 * Words indexed by this trie, with the id (index) of each word.
+	 */
+	WordRegistry words;
+
+	/**
+	 * Index of the word each node's substring is taken from.
+	 */
+	int[] wordIndex;
+
+	/**
+	 * Start index of each node's substring in its word.
+	 */
+	short[] start;
+
+	/**
+	 * End index of each node's substring in its word.
+	 */
+	short[] end;
+
+	/**
+	 * First child of each node.
+	 */
+	int[] firstChild;
+
+	/**
+	 * Sibling of each node.
+	 */
+	int[] sibling;
+
+	/**
+	 * Number of nodes in use, including the root.
+	 */
+	int size;
+
+	/**
+	 * Initializes an empty packed trie, with only the root node.
+	 */
+	public PackedTrie() {
+		this(16);
+	}
+
+	/**
+	 * Initializes an empty packed trie with room for a given number of nodes before
+	 * the arrays need to grow.
+	 *
+	 * @param capacity Initial number of nodes
+	 */
+	public PackedTrie(int capacity) {
+		capacity = Math.max(capacity, 1);
+		words = new WordRegistry();
+		wordIndex = new int[capacity];
+		start = new short[capacity];
+		end = new short[capacity];
+		firstChild = new int[capacity];
+		sibling = new int[capacity];
+		size = 0;
+		newNode(NONE, (short)0, (short)-1); //root
+	}
+
+	/**
+	 * Allocates a node with the given triplet and no children or siblings.
+	 *
+	 * @param w, s, e
+	 * @return handle of the new node
+	 */
+	private int newNode(int w, short s, short e) {
+		if (size == wordIndex.length) {
+			int capacity = size * 2;
+			int[] newWordIndex = new int[capacity];
+			short[] newStart = new short[capacity];
+			short[] newEnd = new short[capacity];
+			int[] newFirstChild = new int[capacity];
+			int[] newSibling = new int[capacity];
+			System.arraycopy(wordIndex, 0, newWordIndex, 0, size);
+			System.arraycopy(start, 0, newStart, 0, size);
+			System.arraycopy(end, 0, newEnd, 0, size);
+			System.arraycopy(firstChild, 0, newFirstChild, 0, size);
+			System.arraycopy(sibling, 0, newSibling, 0, size);
+			wordIndex = newWordIndex;
+			start = newStart;
+			end = newEnd;
+			firstChild = newFirstChild;
+			sibling = newSibling;
+		}
+		int node = size++;
+		wordIndex[node] = w;
+		start[node] = s;
+		end[node] = e;
+		firstChild[node] = NONE;
+		sibling[node] = NONE;
+		return node;
+	}
+
+	/**
+	 * Returns the number of nodes in this trie, including the root.
+	 *
+	 * @return Number of nodes
+	 */
+	public int nodeCount() {
+		return size;
+	}
+
+	/**
+	 * Returns the bytes the node arrays take on the heap, not counting the word registry:
+	 * 16 for each node the arrays have room for, and a 16-byte header per array.
+	 *
+	 * @return Bytes of the node arrays
+	 */
+	public long nodeBytes() {
+		return 16L * wordIndex.length + 5 * 16;
+	}
+
+	/**
+	 * Inserts a word into this trie. Converts to lower case before adding.
+	 * The word is first added to the words registry, then inserted into the trie.
+	 * A word that is already in the trie, or that is empty once trimmed, is not inserted.
+	 *
+	 * @param word Word to be inserted.
+	 */
+	public void insertWord(String word) {
+		word = word.toLowerCase().trim();
+		if (word.isEmpty() || words.contains(word)) {
+			return;
+		}
+		int id = words.register(word);
+		int length = word.length();
+
+		int parent = 0;
+		int pos = 0;
+		while (true) {
+
+			// Find the child that starts with the next character (children are sorted by
+			// first character), remembering the child before it
+			char c = word.charAt(pos);
+			int last = NONE;
+			int ptr = firstChild[parent];
+			while (ptr != NONE && words.get(wordIndex[ptr]).charAt(start[ptr]) < c) {
+				last = ptr;
+				ptr = sibling[ptr];
+			}
+
+			// No child with this character -> new leaf in its place among the children
+			if (ptr == NONE || words.get(wordIndex[ptr]).charAt(start[ptr]) != c) {
+				int leaf = newNode(id, (short)pos, (short)(length-1));
+				sibling[leaf] = ptr;
+				if (last == NONE) {
+					firstChild[parent] = leaf;
+				} else {
+					sibling[last] = leaf;
+				}
+				return;
+			}
+
+			// Length of the common prefix of the child's substring and the rest of the word
+			String existing = words.get(wordIndex[ptr]);
+			int s = start[ptr];
+			int e = end[ptr];
+			int k = 1;
+			while (s+k <= e && pos+k < length && existing.charAt(s+k) == word.charAt(pos+k)) {
+				k++;
+			}
+
+			// Word runs out inside the child's substring -> split the child, the word's node on top
+			if (pos+k == length && s+k <= e) {
+				int rem = newNode(wordIndex[ptr], (short)(s+k), (short)e);
+				firstChild[rem] = firstChild[ptr];
+				firstChild[ptr] = rem;
+				wordIndex[ptr] = id;
+				end[ptr] = (short)(s+k-1);
+				return;
+			}
+
+			// Word ends where the child does -> the child becomes the word's node
+			if (pos+k == length) {
+				wordIndex[ptr] = id;
+				return;
+			}
+
+			// Common prefix ends inside the child's substring -> split the child
+			if (s+k <= e) {
+				int rem = newNode(wordIndex[ptr], (short)(s+k), (short)e);
+				int leaf = newNode(id, (short)(pos+k), (short)(length-1));
+				firstChild[rem] = firstChild[ptr];
+				end[ptr] = (short)(s+k-1);
+				if (word.charAt(pos+k) < existing.charAt(s+k)) {
+					sibling[leaf] = rem;
+					firstChild[ptr] = leaf;
+				} else {
+					sibling[rem] = leaf;
+					firstChild[ptr] = rem;
+				}
+				return;
+			}
+
+			// Whole substring matched -> go down to the child's children
+			if (firstChild[ptr] == NONE) {
+				int leaf = newNode(id, (short)(pos+k), (short)(length-1)); //may grow the arrays -> before indexing them
+				firstChild[ptr] = leaf;
+				return;
+			}
+			parent = ptr;
+			pos += k;
+		}
+	}
+
+	/**
+	 * Given a string prefix, returns its "completion list", i.e. all the words in the trie
+	 * that start with this prefix. Same as Trie.completionList, in the same (sorted) order.
+	 *
+	 * @param prefix Prefix to be completed with words in trie
+	 * @return List of all words in tree that start with the prefix, in sorted order.
+	 *         If there is no word in the tree that has this prefix, null is returned.
+	 */
+	public ArrayList<String> completionList(String prefix) {
+		prefix = prefix.toLowerCase().trim();
+		int length = prefix.length();
+		if (length == 0) {
+			return null;
+		}
+
+		// Walk down to the node where the prefix ends
+		int node = firstChild[0];
+		int pos = 0;
+		while (node != NONE && pos < length) {
+			String existing = words.get(wordIndex[node]);
+			int s = start[node];
+			if (existing.charAt(s) != prefix.charAt(pos)) {
+				node = sibling[node];
+				continue;
+			}
+			int e = end[node];
+			int k = 1;
+			while (s+k <= e && pos+k < length) {
+				if (existing.charAt(s+k) != prefix.charAt(pos+k)) {
+					return null;
+				}
+				k++;
+			}
+			pos += k;
+			if (pos < length) {
+				node = firstChild[node];
+			}
+		}
+		if (node == NONE) {
+			return null;
+		}
+
+		// Collect the words at and under that node
+		ArrayList<String> compList = new ArrayList<String>();
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = node;
+		while (top > 0) {
+			int ptr = stack[--top];
+			if (ptr != node && sibling[ptr] != NONE) {
+				if (top == stack.length) {
+					stack = Arrays.copyOf(stack, top*2);
+				}
+				stack[top++] = sibling[ptr];
+			}
+			if (isWord(ptr)) {
+				compList.add(words.get(wordIndex[ptr]));
+			}
+			if (firstChild[ptr] != NONE) {
+				if (top == stack.length) {
+					stack = Arrays.copyOf(stack, top*2);
+				}
+				stack[top++] = firstChild[ptr];
+			}
+		}
+		return compList;
+	}
+
+	/**
+	 * Tells whether a word ends at a node (see the class comment).
+	 */
+	private boolean isWord(int node) {
+		return words.get(wordIndex[node]).length() == end[node] + 1;
+	}
+
+	public void print() {
+		print(0, 1);
+	}
+
+	private void print(int node, int indent) {
+		for (int i=0; i < indent-1; i++) {
+			System.out.print("    ");
+		}
+
+		if (wordIndex[node] != NONE) {
+			System.out.println("      " + words.get(wordIndex[node]));
+		}
+
+		for (int i=0; i < indent-1; i++) {
+			System.out.print("    ");
+		}
+		System.out.print(" ---");
+		if (node == 0) {
+			System.out.println("(null)");
+		} else {
+			System.out.println("(" + wordIndex[node] + "," + start[node] + "," + end[node] + ")");
+		}
+
+		for (int ptr=firstChild[node]; ptr != NONE; ptr=sibling[ptr]) {
+			for (int i=0; i < indent-1; i++) {
+				System.out.print("    ");
+			}
+			System.out.println("     |");
+			print(ptr, indent+1);
+		}
+	}
+
+}
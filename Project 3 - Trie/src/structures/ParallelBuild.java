@@ -0,0 +1,293 @@
+package structures;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class builds a trie on the threads of a fork/join pool. The words are split
+ * into partitions by their first character, and each partition gets a range of ids of
+ * its own in the trie's word registry, so that partitions can register their words
+ * at the same time. Each partition becomes one child of the root.
+ *
+ * Large partitions are split again by the next character, and so on, and the pieces
+ * are built at the same time: the words of a piece share all the characters before
+ * the one it was split on, so each piece builds into a single node, and the pieces
+ * are joined under a node for the shared characters. Small pieces are built by
+ * inserting their words one at a time, in the order they were given.
+ *
+ * Every node ends up with the same children, in the same (sorted) order, as when the
+ * words are inserted one at a time with insertWord; only the ids of the words differ,
+ * since they are numbered by partition instead of in the order given. Partitions and
+ * pieces are still taken in the order their characters first come up, so that a node
+ * refers to the same word as it would with insertWord; addChild puts them in order.
+ *
+ */
+class ParallelBuild {
+
+	/**
+	 * Pieces with more words than this are split by their next character.
+	 */
+	private static final int SPLIT_SIZE = 2048;
+
+	/**
+	 * Number of words normalized by one task.
+	 */
+	private static final int NORMALIZE_SIZE = 4096;
+
+	/**
+	 * Builds a trie from words in any order. Words that are empty once trimmed are skipped.
+	 *
+	 * @param input Words to insert
+	 * @param pool Pool to build on
+	 * @return Trie with all the words
+	 */
+	static Trie build(Collection<String> input, ForkJoinPool pool) {
+		Trie trie = new Trie();
+		String[] all = input.toArray(new String[input.size()]);
+		pool.invoke(new Normalize(all, 0, all.length));
+
+		// Partitions by first character, in the order the characters first come up
+		// (so each node refers to the word it would with insertWord)
+		HashMap<Character,Integer> partitionOf = new HashMap<Character,Integer>();
+		ArrayList<ArrayList<String>> partitions = new ArrayList<ArrayList<String>>();
+		for (String word : all) {
+			if (word.isEmpty()) {
+				continue; //empty once trimmed -> not inserted, as with insertWord
+			}
+			Character first = word.charAt(0);
+			Integer p = partitionOf.get(first);
+			if (p == null) {
+				p = partitions.size();
+				partitionOf.put(first, p);
+				partitions.add(new ArrayList<String>());
+			}
+			partitions.get(p).add(word);
+		}
+
+		// Duplicates are in the same partition -> dropped by each partition on its own
+		ArrayList<Dedupe> dedupes = new ArrayList<Dedupe>();
+		for (ArrayList<String> partition : partitions) {
+			dedupes.add(new Dedupe(partition));
+		}
+		pool.invoke(new InvokeAll(dedupes));
+
+		// An id range per partition, then all partitions built at once
+		ArrayList<Build> builds = new ArrayList<Build>();
+		for (Dedupe dedupe : dedupes) {
+			int firstId = trie.words.reserve(dedupe.words.size());
+			builds.add(new Build(trie, dedupe.words, firstId));
+		}
+		pool.invoke(new InvokeAll(builds));
+
+		for (Build build : builds) {
+			trie.addChild(trie.root, build.getRawResult());
+			trie.root.count += build.getRawResult().count;
+		}
+		trie.words.publish();
+		return trie;
+	}
+
+	/**
+	 * Runs a number of tasks in the pool and waits for all of them.
+	 */
+	private static class InvokeAll extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private Collection<? extends ForkJoinTask<?>> tasks;
+
+		InvokeAll(Collection<? extends ForkJoinTask<?>> tasks) {
+			this.tasks = tasks;
+		}
+
+		protected void compute() {
+			invokeAll(tasks);
+		}
+	}
+
+	/**
+	 * Converts words to lower case and trims them, as insertWord does, in place.
+	 */
+	private static class Normalize extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private String[] words;
+		private int from, to;
+
+		Normalize(String[] words, int from, int to) {
+			this.words = words;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from > NORMALIZE_SIZE) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Normalize(words, from, middle), new Normalize(words, middle, to));
+				return;
+			}
+			for (int i=from; i < to; i++) {
+				words[i] = words[i].toLowerCase().trim();
+			}
+		}
+	}
+
+	/**
+	 * Drops the repeats of words in a partition, keeping the first of each.
+	 */
+	private static class Dedupe extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private ArrayList<String> words;
+
+		Dedupe(ArrayList<String> words) {
+			this.words = words;
+		}
+
+		protected void compute() {
+			HashSet<String> seen = new HashSet<String>(words.size() * 2);
+			ArrayList<String> unique = new ArrayList<String>(words.size());
+			for (String word : words) {
+				if (seen.add(word)) {
+					unique.add(word);
+				}
+			}
+			words = unique;
+		}
+	}
+
+	/**
+	 * Builds the node for a piece of a partition: words with the same characters before
+	 * index depth. The result is a node whose substring starts at index 0; the caller
+	 * moves the start to where the node goes in the trie.
+	 */
+	private static class Build extends RecursiveTask<TrieNode> {
+
+		private static final long serialVersionUID = 1L;
+
+		private Trie trie;
+		private ArrayList<String> partition;
+		private int firstId;
+		private int[] ids;
+		private int depth;
+
+		/**
+		 * A whole partition, whose words get the ids from firstId on.
+		 */
+		Build(Trie trie, ArrayList<String> partition, int firstId) {
+			this.trie = trie;
+			this.partition = partition;
+			this.firstId = firstId;
+			this.depth = 1;
+		}
+
+		/**
+		 * A piece of a partition, whose words are already placed.
+		 */
+		Build(Trie trie, int[] ids, int depth) {
+			this.trie = trie;
+			this.ids = ids;
+			this.depth = depth;
+		}
+
+		protected TrieNode compute() {
+			WordRegistry words = trie.words;
+
+			// Whole partition -> its words go into its id range
+			if (ids == null) {
+				ids = new int[partition.size()];
+				for (int i=0; i < ids.length; i++) {
+					ids[i] = firstId + i;
+					words.place(ids[i], partition.get(i));
+				}
+				partition = null;
+			}
+
+			if (ids.length > SPLIT_SIZE) {
+				ArrayList<Build> pieces = split(words);
+				if (pieces != null) {
+					invokeAll(pieces);
+					if (pieces.size() == 1) {
+						return pieces.get(0).getRawResult(); //all words share one more character
+					}
+
+					// Node for the shared characters, with a child per piece
+					TrieNode first = pieces.get(0).getRawResult();
+					TrieNode node = new TrieNode(new Indexes(first.substr.wordIndex, (short)0, (short)(depth-1)), null, null);
+					for (Build piece : pieces) {
+						TrieNode child = piece.getRawResult();
+						child.substr = new Indexes(child.substr.wordIndex, (short)depth, child.substr.endIndex);
+						trie.addChild(node, child);
+						node.count += child.count;
+					}
+					return node;
+				}
+			}
+
+			// Small piece -> insert the words one at a time, into a trie of its own
+			Trie piece = new Trie();
+			piece.words = words;
+			for (int id : ids) {
+				String word = words.get(id);
+				piece.insertWordIter(piece.root, word, id);
+				piece.addCount(word);
+			}
+			return piece.root.firstChild;
+		}
+
+		/**
+		 * Splits the words by their character at index depth, in the order the characters
+		 * first come up.
+		 *
+		 * @return Tasks for the pieces, or null if a word has no character at depth
+		 */
+		private ArrayList<Build> split(WordRegistry words) {
+			HashMap<Character,Integer> pieceOf = new HashMap<Character,Integer>();
+			int[] counts = new int[16];
+			int[] pieceIds = new int[ids.length];
+			for (int i=0; i < ids.length; i++) {
+				if (words.length(ids[i]) <= depth) {
+					return null;
+				}
+				Character c = words.charAt(ids[i], depth);
+				Integer p = pieceOf.get(c);
+				if (p == null) {
+					p = pieceOf.size();
+					pieceOf.put(c, p);
+					if (p == counts.length) {
+						int[] newCounts = new int[counts.length * 2];
+						System.arraycopy(counts, 0, newCounts, 0, counts.length);
+						counts = newCounts;
+					}
+				}
+				pieceIds[i] = p;
+				counts[p]++;
+			}
+
+			int[][] pieces = new int[pieceOf.size()][];
+			for (int p=0; p < pieces.length; p++) {
+				pieces[p] = new int[counts[p]];
+				counts[p] = 0;
+			}
+			for (int i=0; i < ids.length; i++) {
+				int p = pieceIds[i];
+				pieces[p][counts[p]++] = ids[i];
+			}
+
+			ArrayList<Build> tasks = new ArrayList<Build>(pieces.length);
+			for (int[] piece : pieces) {
+				tasks.add(new Build(trie, piece, depth + 1));
+			}
+			return tasks;
+		}
+	}
+
+}
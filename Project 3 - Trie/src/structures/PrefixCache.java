@@ -0,0 +1,189 @@
+package structures;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class is a cache of completion lists, keyed by prefix (after lower case
+ * conversion and trimming), for Trie.completionList. It is bounded by the total number
+ * of words in the lists it holds, since one short prefix can complete to a large part
+ * of the trie; when full, the least recently used lists are evicted first.
+ *
+ * Inserting a word changes the completion list of every prefix of the word, and of no
+ * other prefix, so those are the only entries the trie invalidates.
+ *
+ * The counters tell how well the cache is doing for a given size: hits, misses (lookups
+ * that had to walk the trie), and evictions (lists dropped to make room).
+ *
+ */
+public class PrefixCache {
+
+	/**
+	 * Maximum total number of words in the cached lists.
+	 */
+	private int maxWords;
+
+	/**
+	 * Total number of words in the cached lists.
+	 */
+	private int words;
+
+	/**
+	 * Cached lists in order of use, least recently used first.
+	 */
+	private LinkedHashMap<String,ArrayList<String>> lists;
+
+	/**
+	 * Number of invalidations so far. A list computed while an insert was going on may
+	 * already be out of date, so it is only cached if no invalidation came in between.
+	 */
+	private long version;
+
+	private long hits, misses, evictions;
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param maxWords Maximum total number of words in the cached lists
+	 */
+	PrefixCache(int maxWords) {
+		this.maxWords = maxWords;
+		lists = new LinkedHashMap<String,ArrayList<String>>(16, 0.75f, true);
+	}
+
+	/**
+	 * Looks up the completion list of a prefix, and counts a hit or a miss.
+	 *
+	 * @param prefix Prefix, converted to lower case and trimmed
+	 * @return Copy of the cached list (the caller may change it), or null if not cached
+	 */
+	ArrayList<String> get(String prefix) {
+		ArrayList<String> list;
+		synchronized (this) {
+			list = lists.get(prefix);
+			if (list == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+		}
+		return new ArrayList<String>(list); //cached lists are never changed, so can be copied unlocked
+	}
+
+	/**
+	 * Returns the number of invalidations so far, to be passed to put along with a list
+	 * computed after this call.
+	 *
+	 * @return Current version
+	 */
+	synchronized long version() {
+		return version;
+	}
+
+	/**
+	 * Caches the completion list of a prefix, unless an invalidation came in since
+	 * version was read, or the list alone is larger than the cache.
+	 *
+	 * @param prefix Prefix, converted to lower case and trimmed
+	 * @param list Completion list of the prefix (a copy is cached)
+	 * @param version Version read before the list was computed
+	 */
+	void put(String prefix, ArrayList<String> list, long version) {
+		int size = Math.max(list.size(), 1);
+		if (size > maxWords) {
+			return;
+		}
+		ArrayList<String> copy = new ArrayList<String>(list);
+		synchronized (this) {
+			if (version != this.version) {
+				return;
+			}
+			ArrayList<String> old = lists.put(prefix, copy);
+			if (old != null) {
+				words -= Math.max(old.size(), 1);
+			}
+			words += size;
+
+			// Evicting least recently used lists until the words fit
+			Iterator<Map.Entry<String,ArrayList<String>>> eldest = lists.entrySet().iterator();
+			while (words > maxWords) {
+				words -= Math.max(eldest.next().getValue().size(), 1);
+				eldest.remove();
+				evictions++;
+			}
+		}
+	}
+
+	/**
+	 * Drops the completion lists of every prefix of a word, which change when the word is
+	 * inserted into or removed from the trie.
+	 *
+	 * @param word Word inserted or removed, converted to lower case and trimmed
+	 */
+	synchronized void invalidate(String word) {
+		version++;
+		if (lists.isEmpty()) {
+			return;
+		}
+		for (int length=1; length <= word.length(); length++) {
+			ArrayList<String> old = lists.remove(word.substring(0, length));
+			if (old != null) {
+				words -= Math.max(old.size(), 1);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of lookups that found their list in the cache.
+	 *
+	 * @return Number of hits
+	 */
+	public synchronized long hits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of lookups that did not find their list in the cache.
+	 *
+	 * @return Number of misses
+	 */
+	public synchronized long misses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of lists dropped to make room for others (not counting lists
+	 * dropped because an insert changed them).
+	 *
+	 * @return Number of evictions
+	 */
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the number of cached lists.
+	 *
+	 * @return Number of lists
+	 */
+	public synchronized int size() {
+		return lists.size();
+	}
+
+	/**
+	 * Returns the total number of words in the cached lists.
+	 *
+	 * @return Number of words
+	 */
+	public synchronized int words() {
+		return words;
+	}
+
+	public synchronized String toString() {
+		return "hits " + hits + ", misses " + misses + ", evictions " + evictions
+				+ ", " + lists.size() + " lists holding " + words + " of " + maxWords + " words";
+	}
+
+}
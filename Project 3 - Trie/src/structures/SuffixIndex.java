@@ -0,0 +1,481 @@
+package structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * This class is a generalized suffix array over the words of a trie, for substring
+ * (infix) queries, which the trie itself cannot answer: "which words contain graph".
+ *
+ * The words are laid out one after the other in a single text, in sorted order (so a
+ * word's id in the index is its rank), each followed by a separator, and the suffix array lists every position of the text in sorted order of
+ * the suffix starting there. The suffixes that start with a pattern are next to each
+ * other in that order, and each one is an occurrence of the pattern, which is kept as
+ * an Indexes triplet (word, start, end) into the index's words rather than as a copy.
+ *
+ * Separators compare below every character and unequal to each other, so no suffix is
+ * compared past the end of its word. With this, the suffix array is built by prefix
+ * doubling with radix sorts: each round sorts by twice as many characters as the one
+ * before, and all suffixes are told apart once the rounds reach past the longest word,
+ * so the build takes O(n log L) for n characters in all and words of at most L.
+ *
+ * Along with it are the LCP array (length of the longest common prefix of each suffix
+ * with the one before it, by Kasai's algorithm), and the LCPs of the suffixes at the
+ * ends and middle of every range a binary search can visit (Manber and Myers), with
+ * which the search for the first suffix starting with a pattern of length m never
+ * compares a character of the pattern twice over one step: O(m + log n). The other
+ * suffixes that start with it follow, as long as the LCP array stays at m or more, so
+ * a query takes O(m + log n + number of occurrences). containing lists each word once
+ * by stamping its id as it is found, and sorts the ids of the words found (ints, in the
+ * same order as the words).
+ *
+ * The index is a copy: words inserted into or removed from the trie afterwards do not
+ * show in it.
+ *
+ */
+public class SuffixIndex {
+
+	/**
+	 * Character between words in the text.
+	 */
+	private static final char SEPARATOR = '\0';
+
+	/**
+	 * Words of the trie in sorted order, by id.
+	 */
+	private String[] words;
+
+	/**
+	 * Per thread (queries can run in many threads at once), the query that last found
+	 * each word.
+	 */
+	private final ThreadLocal<Stamps> stamps = new ThreadLocal<Stamps>() {
+		protected Stamps initialValue() {
+			return new Stamps(words.length);
+		}
+	};
+
+	/**
+	 * All words, each followed by a separator.
+	 */
+	private char[] text;
+
+	/**
+	 * Word that each position of the text is in, and the position where each word starts.
+	 */
+	private int[] wordAt, wordStart;
+
+	/**
+	 * Positions of the text in sorted order of their suffixes.
+	 */
+	private int[] suffixes;
+
+	/**
+	 * lcp[i] is the length of the longest common prefix of suffixes[i-1] and suffixes[i] (lcp[0] is 0).
+	 */
+	private int[] lcp;
+
+	/**
+	 * For each middle M of a range (L, R) of the binary search, the LCP of suffixes[L] and
+	 * suffixes[M], and of suffixes[M] and suffixes[R].
+	 */
+	private int[] lcpLeft, lcpRight;
+
+	/**
+	 * Builds the index over the words of a trie. The trie cannot be changed while the
+	 * index is being built.
+	 *
+	 * @param trie Trie whose words to index
+	 */
+	SuffixIndex(Trie trie) {
+		synchronized (trie) {
+
+			// Words in sorted order: one walk over the trie, no sorting
+			ArrayList<String> sorted = new ArrayList<String>();
+			int n = 0;
+			for (Iterator<String> it = trie.range(null, null); it.hasNext(); ) {
+				String word = it.next();
+				sorted.add(word);
+				n += word.length() + 1;
+			}
+			words = sorted.toArray(new String[sorted.size()]);
+
+			text = new char[n];
+			wordAt = new int[n];
+			wordStart = new int[words.length];
+			int pos = 0;
+			for (int id=0; id < words.length; id++) {
+				wordStart[id] = pos;
+				words[id].getChars(0, words[id].length(), text, pos);
+				Arrays.fill(wordAt, pos, pos + words[id].length() + 1, id);
+				pos += words[id].length();
+				text[pos++] = SEPARATOR;
+			}
+		}
+
+		buildSuffixes();
+		buildLcp();
+		lcpLeft = new int[text.length];
+		lcpRight = new int[text.length];
+		if (text.length > 1) {
+			buildLcpRanges(0, text.length - 1);
+		}
+	}
+
+	/**
+	 * Sorts the suffixes by prefix doubling: once they are sorted and ranked by their
+	 * first k characters, sorting by the pair (rank of the first k, rank of the next k)
+	 * sorts them by their first 2k characters.
+	 */
+	private void buildSuffixes() {
+		int n = text.length;
+		suffixes = new int[n];
+		int[] rank = new int[n];
+		int[] newRank = new int[n];
+		int[] order = new int[n];
+
+		// First ranks: separators in order of position, below every character
+		int separators = 0;
+		for (int i=0; i < n; i++) {
+			if (text[i] == SEPARATOR) {
+				separators++;
+			}
+		}
+		int seen = 0;
+		for (int i=0; i < n; i++) {
+			rank[i] = text[i] == SEPARATOR ? seen++ : separators + text[i];
+			order[i] = i;
+		}
+		int[] counts = new int[Math.max(separators + Character.MAX_VALUE + 1, n) + 1];
+		radixSort(order, rank, counts, separators + Character.MAX_VALUE + 1);
+		int ranks = rerank(rank, newRank, 0);
+		int[] swap = rank;
+		rank = newRank;
+		newRank = swap;
+
+		for (int k=1; ranks < n; k <<= 1) {
+
+			// By the rank of the next k characters: suffixes with none first (they are told
+			// apart already, ending in a separator), then in the order of the suffix k after them
+			int p = 0;
+			for (int i=Math.max(0, n-k); i < n; i++) {
+				order[p++] = i;
+			}
+			for (int j=0; j < n; j++) {
+				if (suffixes[j] >= k) {
+					order[p++] = suffixes[j] - k;
+				}
+			}
+
+			// Then, stably, by the rank of the first k
+			radixSort(order, rank, counts, ranks);
+			ranks = rerank(rank, newRank, k);
+			swap = rank;
+			rank = newRank;
+			newRank = swap;
+		}
+	}
+
+	/**
+	 * Ranks the suffixes, in sorted order, by the pair (rank, rank k after) of each; two
+	 * suffixes get the same rank if the pairs are the same (with k 0, if the ranks are).
+	 *
+	 * @return Number of different ranks
+	 */
+	private int rerank(int[] rank, int[] newRank, int k) {
+		int next = 0;
+		for (int j=0; j < suffixes.length; j++) {
+			int b = suffixes[j];
+			if (j > 0) {
+				int a = suffixes[j-1];
+				if (rank[a] != rank[b] || (k > 0 && secondRank(rank, a, k) != secondRank(rank, b, k))) {
+					next++;
+				}
+			}
+			newRank[b] = next;
+		}
+		return suffixes.length == 0 ? 0 : next + 1;
+	}
+
+	private static int secondRank(int[] rank, int i, int k) {
+		return i + k < rank.length ? rank[i + k] : -1;
+	}
+
+	/**
+	 * Counting sort of positions by rank, stable, into suffixes.
+	 */
+	private void radixSort(int[] order, int[] rank, int[] counts, int ranks) {
+		Arrays.fill(counts, 0, ranks + 1, 0);
+		for (int i : order) {
+			counts[rank[i] + 1]++;
+		}
+		for (int r=1; r <= ranks; r++) {
+			counts[r] += counts[r-1];
+		}
+		for (int i : order) {
+			suffixes[counts[rank[i]]++] = i;
+		}
+	}
+
+	/**
+	 * Kasai's algorithm: walks the suffixes in order of position, so that the LCP of each
+	 * with the suffix before it in sorted order is at least the previous LCP less one.
+	 */
+	private void buildLcp() {
+		int n = text.length;
+		lcp = new int[n];
+		int[] rankOf = new int[n];
+		for (int j=0; j < n; j++) {
+			rankOf[suffixes[j]] = j;
+		}
+		int h = 0;
+		for (int i=0; i < n; i++) {
+			int j = rankOf[i];
+			if (j == 0) {
+				h = 0;
+				continue;
+			}
+			int before = suffixes[j-1];
+			while (i + h < n && before + h < n && text[i+h] == text[before+h] && text[i+h] != SEPARATOR) {
+				h++;
+			}
+			lcp[j] = h;
+			if (h > 0) {
+				h--;
+			}
+		}
+	}
+
+	/**
+	 * Fills in lcpLeft and lcpRight for the middles of the ranges within (left, right).
+	 *
+	 * @return LCP of suffixes[left] and suffixes[right]
+	 */
+	private int buildLcpRanges(int left, int right) {
+		if (right - left == 1) {
+			return lcp[right];
+		}
+		int middle = (left + right) >>> 1;
+		lcpLeft[middle] = buildLcpRanges(left, middle);
+		lcpRight[middle] = buildLcpRanges(middle, right);
+		return Math.min(lcpLeft[middle], lcpRight[middle]);
+	}
+
+	/**
+	 * Returns the words that contain a pattern anywhere in them.
+	 *
+	 * @param pattern Substring to look for (converted to lower case and trimmed)
+	 * @return List of the words that contain the pattern, each once, in sorted order.
+	 *         If no word contains it, null is returned.
+	 */
+	public ArrayList<String> containing(String pattern) {
+		pattern = pattern.toLowerCase().trim();
+		int first = first(pattern);
+		if (first < 0) {
+			return null;
+		}
+
+		// A word can contain the pattern more than once -> one of each word, the first time it is found
+		int end = end(first, pattern.length());
+		Stamps seen = stamps.get();
+		int query = seen.next();
+		int[] ids = new int[end - first];
+		int count = 0;
+		for (int j=first; j < end; j++) {
+			int id = wordAt[suffixes[j]];
+			if (seen.query[id] != query) {
+				seen.query[id] = query;
+				ids[count++] = id;
+			}
+		}
+
+		// Ids are in the order of the words
+		Arrays.sort(ids, 0, count);
+		ArrayList<String> matches = new ArrayList<String>(count);
+		for (int i=0; i < count; i++) {
+			matches.add(words[ids[i]]);
+		}
+		return matches;
+	}
+
+	/**
+	 * Returns every occurrence of a pattern in the words, as the triplet (id of the word,
+	 * index of the first character, index of the last character). Ids are those of the
+	 * words in this index, their ranks in sorted order (see word).
+	 *
+	 * @param pattern Substring to look for (converted to lower case and trimmed)
+	 * @return Occurrences of the pattern, in sorted order of the rest of their words from
+	 *         them on. If there are none, null is returned.
+	 */
+	ArrayList<Indexes> occurrences(String pattern) {
+		pattern = pattern.toLowerCase().trim();
+		int first = first(pattern);
+		if (first < 0) {
+			return null;
+		}
+		int m = pattern.length();
+		int end = end(first, m);
+		ArrayList<Indexes> found = new ArrayList<Indexes>(end - first);
+		for (int j=first; j < end; j++) {
+			int pos = suffixes[j];
+			int id = wordAt[pos];
+			int start = pos - wordStart[id];
+			found.add(new Indexes(id, (short)start, (short)(start + m - 1)));
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the first suffix that starts with a pattern.
+	 *
+	 * @param pattern (converted to lower case and trimmed)
+	 * @return Index into suffixes, or -1 if no suffix starts with the pattern
+	 */
+	private int first(String pattern) {
+		int m = pattern.length();
+		if (m == 0 || pattern.indexOf(SEPARATOR) >= 0) {
+			return -1;
+		}
+		int first = firstAtLeast(pattern);
+		if (first == suffixes.length || matchLength(pattern, suffixes[first], 0) < m) {
+			return -1;
+		}
+		return first;
+	}
+
+	/**
+	 * The suffixes that start with the pattern run on from the first while they share m
+	 * characters with the one before.
+	 *
+	 * @return Index into suffixes one past the last suffix that starts with the pattern
+	 */
+	private int end(int first, int m) {
+		int end = first + 1;
+		while (end < suffixes.length && lcp[end] >= m) {
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * Returns the word with a given id in this index.
+	 *
+	 * @param id Id of the word, from an Indexes triplet given by occurrences
+	 * @return The word
+	 */
+	String word(int id) {
+		return words[id];
+	}
+
+	/**
+	 * Binary search for the first suffix that is not below the pattern (comparing only
+	 * the first m characters, so any suffix starting with the pattern counts as equal).
+	 * Keeps l and r, the number of characters the pattern shares with suffixes[left] and
+	 * suffixes[right], and compares characters only from the larger of the two on, using
+	 * lcpLeft and lcpRight to settle the middle without comparing when it shares more
+	 * or fewer characters with that end than the pattern does.
+	 *
+	 * @return Index into suffixes, or suffixes.length if every suffix is below the pattern
+	 */
+	private int firstAtLeast(String pattern) {
+		int n = suffixes.length;
+		int m = pattern.length();
+		if (n == 0) {
+			return 0;
+		}
+		int l = matchLength(pattern, suffixes[0], 0);
+		if (notBelow(pattern, suffixes[0], l)) {
+			return 0;
+		}
+		int r = matchLength(pattern, suffixes[n-1], 0);
+		if (!notBelow(pattern, suffixes[n-1], r)) {
+			return n;
+		}
+
+		// suffixes[left] < pattern <= suffixes[right]
+		int left = 0, right = n - 1;
+		while (right - left > 1) {
+			int middle = (left + right) >>> 1;
+			int k;
+			if (l >= r) {
+				if (lcpLeft[middle] > l) { //same as suffixes[left] past l -> below too
+					left = middle;
+					continue;
+				}
+				if (lcpLeft[middle] < l) { //larger than suffixes[left] before l -> above
+					right = middle;
+					r = lcpLeft[middle];
+					continue;
+				}
+				k = matchLength(pattern, suffixes[middle], l);
+			} else {
+				if (lcpRight[middle] > r) { //same as suffixes[right] past r -> not below either
+					right = middle;
+					continue;
+				}
+				if (lcpRight[middle] < r) { //smaller than suffixes[right] before r -> below
+					left = middle;
+					l = lcpRight[middle];
+					continue;
+				}
+				k = matchLength(pattern, suffixes[middle], r);
+			}
+			if (notBelow(pattern, suffixes[middle], k)) {
+				right = middle;
+				r = k;
+			} else {
+				left = middle;
+				l = k;
+			}
+		}
+		return right;
+	}
+
+	/**
+	 * Number of characters the pattern shares with the suffix at a position, counting on
+	 * from a number known to be shared. Stops at the separator ending the word.
+	 */
+	private int matchLength(String pattern, int pos, int from) {
+		int k = from;
+		while (k < pattern.length() && text[pos + k] == pattern.charAt(k)) {
+			k++;
+		}
+		return k;
+	}
+
+	/**
+	 * Tells whether the suffix at a position is not below the pattern, given the number
+	 * of characters they share.
+	 */
+	private boolean notBelow(String pattern, int pos, int shared) {
+		return shared == pattern.length() || pattern.charAt(shared) < text[pos + shared];
+	}
+
+	/**
+	 * Number of the query that last found each word, in one thread. Numbers only go up, so
+	 * a new query needs no clearing (until they wrap around).
+	 */
+	private static class Stamps {
+
+		private final int[] query;
+		private int last;
+
+		Stamps(int words) {
+			query = new int[words];
+		}
+
+		/**
+		 * Returns the number of a new query, different from every number in query.
+		 */
+		int next() {
+			if (++last == 0) {
+				Arrays.fill(query, 0);
+				last = 1;
+			}
+			return last;
+		}
+
+	}
+
+}
@@ -1,6 +1,16 @@
 package structures;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This class implements a compressed trie. Each node of the tree is a CompressedTrieNode, with fields for
@@ -12,15 +22,56 @@ import java.util.ArrayList;
 public class Trie {
 	
 	/**
-	 * Words indexed by this trie.
+	 * Words indexed by this trie, with the id (index) of each word.
 	 */
-	ArrayList<String> words;
+	WordRegistry words;
 	
 	/**
 	 * Root node of this trie.
 	 */
 	TrieNode root;
 	
+	/**
+	 * Cache of completion lists, null if caching is off.
+	 */
+	private volatile PrefixCache cache;
+	
+	/**
+	 * Number of times the words have been renumbered (see removeWord), times 2, plus 1
+	 * while a renumbering is going on. Readers check it to find out if the ids they read
+	 * changed under them.
+	 */
+	private volatile int renumberings;
+	
+	/**
+	 * Counters of what this trie does, null unless instrumentation is on (see TrieMetrics).
+	 */
+	private final TrieMetrics metrics = TrieMetrics.ENABLED ? new TrieMetrics() : null;
+	
+	/**
+	 * The words are renumbered once 1 in this many slots of the word registry holds a
+	 * removed word.
+	 */
+	private static final int RENUMBER_FRACTION = 16;
+	
+	/**
+	 * Stack for walking the trie, one per thread (readers can run in many threads at once).
+	 */
+	private static final ThreadLocal<NodeStack> STACKS = new ThreadLocal<NodeStack>() {
+		protected NodeStack initialValue() {
+			return new NodeStack();
+		}
+	};
+	
+	/**
+	 * Orders nodes by the largest weight under them, largest first.
+	 */
+	private static final Comparator<TrieNode> MAX_WEIGHT_FIRST = new Comparator<TrieNode>() {
+		public int compare(TrieNode a, TrieNode b) {
+			return Integer.compare(b.maxWeight, a.maxWeight);
+		}
+	};
+	
 	/**
 	 * Initializes a compressed trie with words to be indexed, and root node set to
 	 * null fields.
@@ -28,45 +79,204 @@ public class Trie {
 	 * @param words
 	 */
 	public Trie() {
+		this(false);
+	}
+	
+	/**
+	 * Initializes an empty compressed trie whose words are kept on or off the heap. Off
+	 * the heap, the words are packed into a WordArena of direct buffers instead of being
+	 * a String each, so a dictionary of many millions of words does not give the garbage
+	 * collector a String per word to trace; the nodes still are on the heap. Nodes read
+	 * their characters from the arena in place, and the words a query returns are Strings
+	 * built from it.
+	 * 
+	 * @param offHeapWords True to keep the words off the heap
+	 */
+	public Trie(boolean offHeapWords) {
 		root = new TrieNode(null, null, null);
-		words = new ArrayList<String>();
+		words = new WordRegistry(offHeapWords);
 	}
 	
 	/**
-	 * Uses TrieNode's word index to find the starting and ending substring of the word.
+	 * Uses TrieNode's word index to find a character of the node's substring, without
+	 * creating the substring.
 	 * 
-	 * @param commonNode
-	 * @return String of word's substring
+	 * @param node, index (index into the whole word, between the node's start and end indexes)
+	 * @return character of the word at that index
 	 */
-	private String getNodeSubstring(TrieNode commonNode) {
+	private char nodeChar(TrieNode node, int index) {
 		
-		// Initializing Variables
-		int index = commonNode.substr.wordIndex; //word index
-		short indexStart = commonNode.substr.startIndex; //starting index of word or set of characters
-		short indexEnd = (short)(commonNode.substr.endIndex + 1); //ending index of word or set of characters
+		if(TrieMetrics.ENABLED){
+			metrics.compared();
+		}
+		return words.charAt(node.substr.wordIndex, index);
+		
+	} //end of nodeChar method
+	
+	/**
+	 * Compares characters of a node's word to those of another word in place, finding the
+	 * node's word once for all of them (off the heap, its place in the arena).
+	 * 
+	 * @param node, from (first index to compare), to (index past the last one, at most the length of either word), word
+	 * @return first index from 'from' on where the words differ, or 'to' if they do not
+	 */
+	private int nodeMismatch(TrieNode node, int from, int to, String word) {
 		
-		// Substring -> start to end
-		String commonNodeSubstring = words.get(index).substring(indexStart, indexEnd);
+		int index = words.mismatch(node.substr.wordIndex, from, to, word);
+		if(TrieMetrics.ENABLED){
+			metrics.compared(Math.max(0, Math.min(index + 1, to) - from));
+		}
+		return index;
+		
+	} //end of nodeMismatch method
+	
+	/**
+	 * Finds the child of a node whose substring starts with a given character. Uses the
+	 * node's child index if it has one, otherwise walks the firstChild/sibling list (which
+	 * is in order of first character, so the walk stops at the first larger character).
+	 * 
+	 * @param parent, c
+	 * @return child starting with c, or null if there is none
+	 */
+	private TrieNode findChild(TrieNode parent, char c) {
+		
+		// Many children -> index lookup
+		if(parent.children != null){
+			if(TrieMetrics.ENABLED){
+				metrics.lookup(0);
+			}
+			return parent.children.get(c);
+		}
+		
+		// Few children -> walk the list
+		int walked = 0; //children passed over, for the metrics
+		TrieNode ptr = parent.firstChild;
+		for(; ptr != null; ptr = ptr.sibling){
+			char first = nodeChar(ptr, ptr.substr.startIndex);
+			if(first == c){
+				break;
+			}
+			if(first > c){
+				ptr = null;
+				break; //siblings are sorted -> no child with c
+			}
+			walked++;
+		}
 		
-		return commonNodeSubstring; //starting index to ending index
+		if(TrieMetrics.ENABLED){
+			metrics.lookup(walked);
+		}
+		return ptr;
 		
-	} //end of getNodeSubstring method
+	} //end of findChild method
 	
 	/**
-	 * Searches ArrayList for specified word.
+	 * Adds a node as a child of parent, in its place by first character among the other
+	 * children (so that siblings stay sorted), and keeps parent's child index up to date
+	 * (building it once parent reaches ChildIndex.MIN_CHILDREN children). The child is
+	 * linked in with a single write, after its sibling link is set.
 	 * 
-	 * @param word
-	 * @return True if word is found; false otherwise
+	 * @param parent, child
 	 */
-	private boolean searchArrList(String word){
+	void addChild(TrieNode parent, TrieNode child) {
+		
+		char c = nodeChar(child, child.substr.startIndex); //first character of child
+		
+		// Parent has an index -> it finds the previous sibling; then publish an updated copy of the index
+		if(parent.children != null){
+			ChildIndex index = parent.children.copy();
+			index.put(c, child);
+			linkAfter(parent, parent.children.before(c), child);
+			parent.children = index;
+			return;
+		}
+		
+		// Walk the list -> previous sibling is the last child with a smaller first character
+		int count = 0;
+		TrieNode prev = null;
+		for(TrieNode ptr = parent.firstChild; ptr != null; ptr = ptr.sibling){
+			if(nodeChar(ptr, ptr.substr.startIndex) < c){
+				prev = ptr;
+			}
+			count++;
+		}
+		linkAfter(parent, prev, child);
+		
+		// Enough children -> build the index
+		if(count + 1 >= ChildIndex.MIN_CHILDREN){
+			ChildIndex index = new ChildIndex();
+			for(TrieNode ptr = parent.firstChild; ptr != null; ptr = ptr.sibling){
+				index.put(nodeChar(ptr, ptr.substr.startIndex), ptr);
+			}
+			parent.children = index;
+		}
+		
+	} //end of addChild method
+	
+	/**
+	 * Links child into parent's firstChild/sibling list right after prev (first, if prev
+	 * is null).
+	 * 
+	 * @param parent, prev, child
+	 */
+	private void linkAfter(TrieNode parent, TrieNode prev, TrieNode child) {
 		
-		for(int index = 0; index < words.size(); index++){
-			if(words.get(index).equals(word)){
-				return true;
+		if(prev == null){
+			child.sibling = parent.firstChild;
+			parent.firstChild = child;
+		} else {
+			child.sibling = prev.sibling;
+			prev.sibling = child;
+		}
+		
+	} //end of linkAfter method
+	
+	/**
+	 * Puts newNode in the place of oldNode, a child of parent: in the firstChild/sibling
+	 * list and in parent's child index. Both nodes must start with the same character.
+	 * 
+	 * Splitting a node changes both its substring and its children, and a reader could see
+	 * one change without the other if they were made to the node in place. Instead, the
+	 * split node is built as a new node and linked in with a single write, so readers see
+	 * either the old node or the new one. The old node is left as it was, for readers
+	 * that are still on it.
+	 * 
+	 * @param parent, oldNode, newNode
+	 */
+	private void replaceChild(TrieNode parent, TrieNode oldNode, TrieNode newNode) {
+		
+		// newNode continues the list where oldNode did
+		newNode.sibling = oldNode.sibling;
+		
+		// Linking newNode from oldNode's previous sibling (or from parent, if oldNode is the first child)
+		if(parent.firstChild == oldNode){
+			parent.firstChild = newNode;
+		} else {
+			TrieNode prev = parent.firstChild;
+			while(prev.sibling != oldNode){
+				prev = prev.sibling;
 			}
+			prev.sibling = newNode;
+		}
+		
+		// Publishing an updated copy of the index
+		if(parent.children != null){
+			ChildIndex index = parent.children.copy();
+			index.put(nodeChar(newNode, newNode.substr.startIndex), newNode);
+			parent.children = index;
 		}
 		
-		return false;
+	} //end of replaceChild method
+	
+	/**
+	 * Searches the word registry for specified word.
+	 * 
+	 * @param word
+	 * @return True if word is found; false otherwise
+	 */
+	private boolean searchArrList(String word){
+		
+		return words.contains(word); //hash lookup, no scan over the words
 		
 	} //end of searchArrList method
 	
@@ -79,40 +289,13 @@ public class Trie {
 	private Indexes createIndexes(String insWord, TrieNode node) {
 		
 		// Initializing Variables
-		String existingWord = getNodeSubstring(node); //passes node to getNodeSubstring method -> commonNodeSubstring
 		int nsi = node.substr.startIndex; //starting index of passed in node
-		String insertedWord = insWord.substring(nsi); //substring of nsi
-		short count = -1; //if this number doesn't change -> no common prefix
-		short index = 0; //character at certain index for the while loop
-		
-		//System.out.println("- - - - - - - - - - ");
-		//System.out.println("existing:  " + existingWord);
-		//System.out.println("inserting: " + insertedWord);
-		//System.out.println("- - - - - - - - - - ");
-		
-		// Compares words with common prefix -> gets longest common prefix
-		while(index < existingWord.length()){
-			
-			// Initializing Variables -> characters at certain index
-			char nStringChar = existingWord.charAt(index);
-			char sStringChar = insertedWord.charAt(index);
-			
-			// Characters don't match -> break out of while loop
-			if(nStringChar != sStringChar){
-				//System.out.println("Difference: " + nStringChar + " -|- " + sStringChar);
-				//System.out.println("- - - - - - - - - - ");
-				//System.out.println("");
-				break; //breaks out of while loop
-			
-			// Otherwise -> make count equal to index
-			} else {
-				//System.out.println("Count (before): " + count);
-				count = index;
-				//System.out.println("Count (after): " + count);
-			}
-			
-			index++; //increment index by 1
-		}
+		int nei = node.substr.endIndex; //ending index of passed in node
+		int insLength = insWord.length(); //length of inserted word
+		
+		// Compares the words in place (no substrings) -> gets longest common prefix
+		int index = nodeMismatch(node, nsi, Math.min(nei + 1, insLength), insWord); //first index where they differ
+		int count = index - nsi - 1; //matched length minus one -> -1 if no common prefix
 		
 		// No common prefix between the words
 		if(count == -1){
@@ -151,354 +334,393 @@ public class Trie {
 	} //end of getWordFromIndex method
 	
 	/**
-	 * Recursively inserts word in the trie.
+	 * Inserts word in the trie below parent, going down one level per loop iteration
+	 * (no recursion) until the word's branch point is found. A word may be a prefix of
+	 * words already in the trie, or have one of them as a prefix: its node is then an
+	 * internal node, marked as terminal.
 	 * 
-	 * @param root, origWord, insWord
+	 * @param parent, insWord, wordIndex (index of insWord in 'words', computed once by insertWord)
 	 */
-	private void insertWordRecurs(TrieNode root, String origWord, String insWord) {
-		
-		// Initializing Variables
-		Indexes commPref = null;
-		boolean execute = true;
-			
-		// Initializing Pointers
-		TrieNode ptr = root.firstChild;
-		TrieNode pvHolder = null;
-		
-		// Always executed
-		if(execute == true){
-			commPref = createIndexes(insWord, ptr);
-			//System.out.println("- if statement: " + commPref);
-			pvHolder = ptr;
-			ptr = ptr.sibling;
-		}
+	void insertWordIter(TrieNode parent, String insWord, int wordIndex) {
 		
-		// 
-		while(ptr != null && commPref == null){
-			commPref = createIndexes(insWord, ptr);
-			//System.out.println("- while loop: " + commPref);
-			pvHolder = ptr;
-			ptr = ptr.sibling;
-		}
-		
-		// pvHolder's first child
-		TrieNode pvHfc = pvHolder.firstChild;
-		
-		// No Common Prefix -> create siblings of root's firstChild
-		if(commPref == null && ptr == null){
-			
-			//System.out.println("no common prefix - also executed in recursive statement");
-			
-			// Initializing Indexes Parameters (Word Index, Start Index, End Index)
-			int indexWord = words.indexOf(insWord);
-			short indexStart = pvHolder.substr.startIndex;
-			short indexEnd = (short)(insWord.length() - 1);
-			
-			// Creating Indexes
-			Indexes sib = new Indexes(indexWord, indexStart, indexEnd);
-			
-			//System.out.println("- - - - - - - - - - ");
-			//System.out.println("sibling indexes (word pos, start, end): ");
-			//System.out.println(sib.toString());
-			//System.out.println("- - - - - - - - - - ");
-			//System.out.println("");
+		while(true){
 			
-			// Creating sibling of firstChild
-			pvHolder.sibling = new TrieNode(sib, null, null);
-			
-		}
-		
-		// Common Prefix (no child) -> adjust indexes and create node's first child
-		else if(pvHfc == null){
+			// Initializing Variables
+			Indexes commPref = null;
+			int pos = (parent == root) ? 0 : parent.substr.endIndex + 1; //index of insWord's next character
 			
-			//System.out.println("common prefix, but no first child");
-			//System.out.println("");
+			// Word ends where parent does -> parent becomes the word's node (its characters are the word's)
+			if(pos == insWord.length()){
+				parent.substr = new Indexes(wordIndex, parent.substr.startIndex, parent.substr.endIndex);
+				parent.terminal = true; //after substr -> readers that see the mark see the word
+				return;
+			}
+				
+			// Initializing Pointers -> only the child starting with the next character can share a prefix
+			TrieNode pvHolder = findChild(parent, insWord.charAt(pos));
 			
-			// Initializing Indexes Parameters (Word Index, Start Index, End Index)
-			short indexEnd = pvHolder.substr.endIndex;
-			pvHolder.substr = commPref;
-			short indexStart = (short)(commPref.endIndex + 1);    
-			
-			// Creating Indexes 1 (insW) and TrieNode 1 (insNode)
-			int indexWord = words.indexOf(insWord); //word index of inserted word
-			short insWordIndexEnd = (short)(insWord.length() -1); //end index of inserted word
-			Indexes insW = new Indexes (indexWord, indexStart, insWordIndexEnd); //inserted word 'indexes'
-			TrieNode insNode = new TrieNode (insW, null, null); //inserted word node
-			//System.out.println(insW.toString() + " - insW");
-			
-			// Creating Indexes 2 (cpW) and TrieNode 2 (cpNode)
-			int commPrefIndex = commPref.wordIndex; //index of commPref	
-			Indexes cpW = new Indexes (commPrefIndex, indexStart, indexEnd); //common prefix 'indexes'
-			TrieNode cpNode = new TrieNode (cpW, null, insNode); //common prefix node
-			//cpNode.sibling = insNode; //make insNode the sibling of cpNode
-			//System.out.println(cpW.toString() + " - cpW");
-			
-			// Advancing Pointers
-			//System.out.println("");
-			pvHolder.firstChild = cpNode; //make cpNode pvHolder's first child
-			//System.out.println("");
-		
-		// Common Prefix (sibling)
-		} else {
+			// No Common Prefix -> create new child of parent
+			if(pvHolder == null){
+				
+				// Initializing Indexes Parameters (Word Index, Start Index, End Index)
+				int indexWord = wordIndex;
+				short indexStart = (short)pos;
+				short indexEnd = (short)(insWord.length() - 1);
+				
+				// Creating Indexes
+				Indexes sib = new Indexes(indexWord, indexStart, indexEnd);
+				
+				// Creating a child of parent, in its place among the siblings
+				TrieNode sibNode = new TrieNode(sib, null, null);
+				sibNode.terminal = true;
+				addChild(parent, sibNode);
+				
+				return;
+				
+			}
 			
-			// Initializing Variables
-			int pvHolderEnd = pvHolder.substr.endIndex; //pvHolder's ending index
-			int commonPrefEnd = commPref.endIndex; //commonPref's ending index
+			// Common prefix with pvHolder -> at least the first character
+			commPref = createIndexes(insWord, pvHolder);
 			
-			// Common Prefix (sibling) -> adjusts indexes of child prefix node and creates/adds sibling to child node
-			if(pvHolderEnd != commonPrefEnd){
+			// Word ends inside pvHolder's substring -> pvHolder is split there, with the word's node on top
+			if(commPref.endIndex == insWord.length() - 1 && commPref.endIndex < pvHolder.substr.endIndex){
 				
-				//System.out.println("common prefix - sibling of changed common prefix child");
-				//System.out.println("");
+				// Rest of pvHolder -> keeps its word, children and weights
+				Indexes remIndexes = new Indexes(pvHolder.substr.wordIndex, (short)(commPref.endIndex + 1), pvHolder.substr.endIndex);
+				TrieNode remNode = new TrieNode(remIndexes, pvHolder.firstChild, null);
+				remNode.children = pvHolder.children;
+				remNode.terminal = pvHolder.terminal;
+				remNode.weight = pvHolder.weight;
+				remNode.maxWeight = pvHolder.maxWeight;
+				remNode.count = pvHolder.count;
 				
-				// Updating pvHolder's Indexes (commPref becomes pvHolder's substring)
-				Indexes oldCommNode = pvHolder.substr; //holds original indexes
-				pvHolder.substr = commPref; //substring of pvHolder becomes new indexes
-
-				// Creating Indexes 1 (insNewIndexes)
-				int ss = (commPref.endIndex + 1);
-				short s = (short)(ss); //starting index
-				int w = words.indexOf(insWord);
-				//System.out.println("start: " + start);
-				int ee = (insWord.length() - 1);
-				short e = (short)(ee); //ending index
-				//System.out.println("end: " + end);
+				// Word's node -> the common prefix, with the rest as its only child, takes pvHolder's place
+				Indexes wordIndexes = new Indexes(wordIndex, commPref.startIndex, commPref.endIndex);
+				TrieNode wordNode = new TrieNode(wordIndexes, remNode, null);
+				wordNode.terminal = true;
+				wordNode.maxWeight = pvHolder.maxWeight;
+				wordNode.count = pvHolder.count; //the new word is counted by addCount
+				replaceChild(parent, pvHolder, wordNode);
 				
-				Indexes insNewIndexes = new Indexes (w, s, e); //indexes 1 - new
-				//System.out.println(insNewIndexes.toString());
+				return;
 				
-				// Creating Indexes 2 (oldRemIndexes)
-				int oldCommNodeIndex = oldCommNode.wordIndex; //index of old common node
-				short cpref2 = (short)(commPref.endIndex + 1); //ending of commPref plus one (2)
-				short oldCNendIndex = oldCommNode.endIndex; //ending index of old common node
+			}
+			
+			// pvHolder's first child
+			TrieNode pvHfc = pvHolder.firstChild;
+			
+			// Whole substring of a leaf matched -> the word goes on below it (the leaf gets its first child)
+			if(pvHfc == null && commPref.endIndex == pvHolder.substr.endIndex){
+				parent = pvHolder;
+				continue;
+			}
+			
+			// Common Prefix (no child) -> adjust indexes and create node's first child
+			if(pvHfc == null){
 				
-				Indexes oldRemIndexes = new Indexes (oldCommNodeIndex, cpref2, oldCNendIndex); //indexes 2 - remaining of old
+				// Initializing Indexes Parameters (Word Index, Start Index, End Index)
+				short indexEnd = pvHolder.substr.endIndex;
+				short indexStart = (short)(commPref.endIndex + 1);    
 				
-				// Creating TrieNode 1 (insNewNode)
-				TrieNode insNewNode = new TrieNode(insNewIndexes, null, null); //TrieNode 1 = new
+				// Creating Indexes 1 (insW) and TrieNode 1 (insNode)
+				int indexWord = wordIndex; //word index of inserted word
+				short insWordIndexEnd = (short)(insWord.length() -1); //end index of inserted word
+				Indexes insW = new Indexes (indexWord, indexStart, insWordIndexEnd); //inserted word 'indexes'
+				TrieNode insNode = new TrieNode (insW, null, null); //inserted word node
+				insNode.terminal = true;
 				
-				// Creating TrieNode 2 (oldRemNode)
-				TrieNode oldRemNode = new TrieNode(oldRemIndexes, null, null); //TrieNode 2 = remaining of old
+				// Creating Indexes 2 (cpW) and TrieNode 2 (cpNode)
+				int commPrefIndex = commPref.wordIndex; //index of commPref	
+				Indexes cpW = new Indexes (commPrefIndex, indexStart, indexEnd); //common prefix 'indexes'
+				TrieNode cpNode = new TrieNode (cpW, null, insNode); //common prefix node
+				cpNode.terminal = true; //pvHolder's word now ends at cpNode
+				cpNode.weight = pvHolder.weight;
+				cpNode.maxWeight = pvHolder.maxWeight;
+				cpNode.count = pvHolder.count;
+				//cpNode.sibling = insNode; //make insNode the sibling of cpNode
 				
-				oldRemNode.firstChild = pvHolder.firstChild; //pvHolder's first child becomes oldRemNode's first child
-				oldRemNode.sibling = insNewNode; //insNewNode becomes oldRemNode's sibling
-				pvHolder.firstChild = oldRemNode; //oldRemNode becomes pvHolder's first child
+				// Children in order of first character -> insNode first if its character is smaller
+				TrieNode cpFirst = cpNode;
+				if(insWord.charAt(indexStart) < nodeChar(cpNode, indexStart)){
+					cpNode.sibling = null;
+					insNode.sibling = cpNode;
+					cpFirst = insNode;
+				}
 				
-			// Recursive -> passes itself new/modified parameters
+				// Creating TrieNode 3 (cpHolder) -> commPref with the two as children, takes pvHolder's place
+				TrieNode cpHolder = new TrieNode (commPref, cpFirst, null);
+				cpHolder.maxWeight = pvHolder.maxWeight;
+				cpHolder.count = pvHolder.count; //the new word is counted by addCount
+				replaceChild(parent, pvHolder, cpHolder);
+			
+			// Common Prefix (sibling)
 			} else {
 				
 				// Initializing Variables
-				int cpref1 = (commPref.endIndex + 1); //commPref ending index plus one
-				String nadeshot = origWord.substring(cpref1); //original word's substring from beginning to cpref1's ending index
-				
-				//System.out.println("common prefix (sibling - else): " + nadeshot);
-				//System.out.println("");
+				int pvHolderEnd = pvHolder.substr.endIndex; //pvHolder's ending index
+				int commonPrefEnd = commPref.endIndex; //commonPref's ending index
 				
-				//Recursion
-				insertWordRecurs(pvHolder, nadeshot, insWord);
+				// Common Prefix (sibling) -> adjusts indexes of child prefix node and creates/adds sibling to child node
+				if(pvHolderEnd != commonPrefEnd){
+					
+					// Initializing Variables
+					Indexes oldCommNode = pvHolder.substr; //holds original indexes
+
+					// Creating Indexes 1 (insNewIndexes)
+					int ss = (commPref.endIndex + 1);
+					short s = (short)(ss); //starting index
+					int w = wordIndex;
+					int ee = (insWord.length() - 1);
+					short e = (short)(ee); //ending index
+					
+					Indexes insNewIndexes = new Indexes (w, s, e); //indexes 1 - new
+					
+					// Creating Indexes 2 (oldRemIndexes)
+					int oldCommNodeIndex = oldCommNode.wordIndex; //index of old common node
+					short cpref2 = (short)(commPref.endIndex + 1); //ending of commPref plus one (2)
+					short oldCNendIndex = oldCommNode.endIndex; //ending index of old common node
+					
+					Indexes oldRemIndexes = new Indexes (oldCommNodeIndex, cpref2, oldCNendIndex); //indexes 2 - remaining of old
+					
+					// Creating TrieNode 1 (insNewNode)
+					TrieNode insNewNode = new TrieNode(insNewIndexes, null, null); //TrieNode 1 = new
+					insNewNode.terminal = true;
+					
+					// Creating TrieNode 2 (oldRemNode)
+					TrieNode oldRemNode = new TrieNode(oldRemIndexes, null, null); //TrieNode 2 = remaining of old
+					
+					oldRemNode.firstChild = pvHolder.firstChild; //pvHolder's first child becomes oldRemNode's first child
+					oldRemNode.children = pvHolder.children; //so does the index of those children
+					oldRemNode.terminal = pvHolder.terminal; //and pvHolder's word, if it ends there
+					oldRemNode.weight = pvHolder.weight;
+					oldRemNode.maxWeight = pvHolder.maxWeight; //and the weights under them
+					oldRemNode.count = pvHolder.count; //and the number of words
+					// Children in order of first character -> the smaller one first, the other its sibling
+					TrieNode cpFirst = oldRemNode;
+					if(insWord.charAt(s) < nodeChar(oldRemNode, s)){
+						insNewNode.sibling = oldRemNode;
+						cpFirst = insNewNode;
+					} else {
+						oldRemNode.sibling = insNewNode;
+					}
+					
+					// Creating TrieNode 3 (cpHolder) -> commPref with the two as children, takes pvHolder's place
+					TrieNode cpHolder = new TrieNode(commPref, cpFirst, null); //two children -> no index
+					cpHolder.maxWeight = pvHolder.maxWeight;
+					cpHolder.count = pvHolder.count; //the new word is counted by addCount
+					replaceChild(parent, pvHolder, cpHolder);
+					
+				// Whole substring of pvHolder matched -> go on with pvHolder's children
+				} else {
+					
+					//Next level -> children of pvHolder compare from their own start index on
+					parent = pvHolder;
+					continue;
+					
+				} 
 				
-			} 
+			}
+			
+			return; //word inserted
 			
 		}
 		
-	} //end of insertWordRecurs method
+	} //end of insertWordIter method
 	
 	/**
-	 * Searches ArrayList to find the index of a given word.
+	 * Searches the word registry to find the index of a given word.
 	 * 
 	 * @param word 
 	 * @return index of a given word
 	 */
 	private int findWordIndex(String word) {
 		
-		for(int index = 0; index < words.size(); index++){
-			if(words.get(index).equals(word)){
-				return index;
-			}
-		}
-		
-		return -1;
+		return words.indexOf(word); //hash lookup, no scan over the words
 		
 	} //end of findWordIndex method
 	
 	/**
-	 * Finds the node that is the root node for all the words containing the common prefix.
+	 * Finds the node that is the root node for all the words containing the common prefix,
+	 * searching down from the children of parent one level per loop iteration. Characters
+	 * are compared in place: a node's start index is also the index of the matching
+	 * character in the prefix, so no substrings are created.
 	 * 
-	 * 
-	 * @param ptr, prefix
+	 * @param parent, prefix
 	 * @return root node of all common prefix words
 	 */
-	private TrieNode getCommonRNode(TrieNode ptr, String prefix){
+	private TrieNode getCommonRNode(TrieNode parent, String prefix){
 
 		// Initializing Variables
-		String ptrS = "";
-		int ptrLength = 0;
-		int prefLength = 0;
-		int length = 0;
-		boolean ace = true;
-		boolean noscope = true;
-		TrieNode worstCase = null;
-		
-		// Converts common node's indexes to string - e.g (0, 0, 1) -> ca
-		ptrS = getNodeSubstring(ptr);
-		
-		// Getting Lengths of Common Root Node (ptrS) and Prefix (prefix)
-		ptrLength = ptrS.length();
-		prefLength = prefix.length();
-		
-		// Determining which length is bigger -> makes 'length' either ptrLength or prefLength
-		if(ptrLength > prefLength){
-			length = prefLength;
-		} else {
-			length = ptrLength;
-		}
-
-		// Checking for similar characters -> booleans 'noscope' and 'ace'
-		for(int index = 0; index < length; index++){
+		int prefLength = prefix.length();
+		int depth = 1; //level of the children of parent, for the metrics
+		
+		while(true){
+			
+			int pos = (parent == root) ? 0 : parent.substr.endIndex + 1; //index of the prefix's next character
 			
-			// Initializing Variables (characters)
-			char ptrSChar = ptrS.charAt(index);
-			char prefChar = prefix.charAt(index);
+			// Case 1 - empty prefix (nothing to compare) -> return null
+			if(pos >= prefLength){
+				return null;
+			}
+			
+			// Case 2 - no child starts with the next character -> return null
+			TrieNode ptr = findChild(parent, prefix.charAt(pos));
+			if(ptr == null){
+				return null;
+			}
+			
+			// Initializing Variables
+			int ptrEnd = ptr.substr.endIndex + 1; //one past the node's last character
+			int length = 0;
 			
-			if(ptrSChar == prefChar){
-				noscope = false;
+			// Determining which ends first -> makes 'length' either ptrEnd or prefLength
+			if(ptrEnd > prefLength){
+				length = prefLength;
 			} else {
-				ace = false;
+				length = ptrEnd;
 			}
 			
-		}
-		
-		// Case 1 - ace == true and noscope == false
-		if(ace == true && noscope == false){
+			// Case 3 - a later character differs -> return null
+			if(pos + 1 < length && nodeMismatch(ptr, pos + 1, length, prefix) < length){
+				return null;
+			}
 			
-			// Case 1A - ptrLength > prefLength [LESS THAN]
-			if(ptrLength < prefLength){
+			// Case 4A - prefix goes past this node -> next level, its children
+			if(ptrEnd < prefLength){
 				
-				// Initializing Variables
-				TrieNode ptrFC = ptr.firstChild;
-				String updatedPref = "";
-				
-				// Getting new prefix based on ptrLength's length
-				updatedPref = prefix.substring(ptrLength);
-				
-				// Common prefix found -> recursion
-				if(ptrFC != null){
-					return getCommonRNode(ptrFC, updatedPref); //recursion
-				
-				// No common prefix found -> return null
-				} else {
+				// No children -> no common prefix found, return null
+				if(ptr.firstChild == null){
 					return null;
 				}
-				
-			// Case 1B && 1C - ptrLength > OR == prefLength [GREATER THAN OR EQUAL TO[
-			} else if(ptrLength > prefLength || ptrLength == prefLength){
-				
-				return ptr;
-			}
-		
-		// Case 2 - ace == false
-		} else if(ace == false){
+				parent = ptr;
+				depth++;
 			
-			// Case 2A & 2B - noscope == true or false
-			if(noscope == true || noscope == false){
-				
-				// Initializing Pointers
-				TrieNode ptrSibling = ptr.sibling;
+			// Case 4B - prefix ends in this node -> this is the common root node
+			} else {
 				
-				if(ptrSibling != null){
-					
-					return getCommonRNode(ptrSibling, prefix);
-				} else {
-					
-					return null;
+				if(TrieMetrics.ENABLED){
+					metrics.found(depth);
 				}
-
+				return ptr;
 			}
-		
-		// Case 3 - otherwise, return null
-		} else {
-			
-			return null;
 		}
 		
-		//System.out.println("reached worst case: " + worstCase);
-		
-		return worstCase; //worst case scenario -> returns null (*HOPEFULLY* should NEVER reach this)
-		
 	} //end of getCommonRNode method
 	
 	/**
-	 * Adds words with the prefix to a completion list ArrayList
+	 * Adds words with the prefix to a completion list ArrayList. Walks the subtree of
+	 * rootNode with an explicit stack (a node's sibling is pushed before its first child,
+	 * so the child's subtree comes first), so wide or deep subtrees cannot overflow the
+	 * call stack. A node's own word is added before the words below it, which it is a
+	 * prefix of.
 	 * 
-	 * 
-	 * @param ptr, rootNode, compList
+	 * @param rootNode, compList
 	 * @return ArrayList containing all the words that share the prefix
 	 */
-	private void addToCL(TrieNode ptr, TrieNode rootNode, ArrayList<String> compList){
+	private void addToCL(TrieNode rootNode, ArrayList<String> compList){
 
-		// Initializing Variables
-		short iStart = 0;
-		short iEnd = (short)(ptr.substr.endIndex + 1);
-		int wordIndex = ptr.substr.wordIndex;
-		String wordCL = words.get(wordIndex).substring(iStart, iEnd);
-		
-		//System.out.println("-> Word: " + wordCL);
-		
-		// Single common prefix word - is always executed once
-		if(ptr == rootNode){
-			
-			// Initializing Pointers
-			TrieNode ptrFC = ptr.firstChild;
-			
-			if(ptrFC != null){
-				addToCL(ptrFC, rootNode, compList);
-			} else {
-				compList.add(wordCL); //adds word to completion list ArrayList
-			}
+		// Initializing Variables -> this thread's stack, reused from call to call
+		NodeStack stack = STACKS.get();
+		stack.clear(); //left over if a read was cut short
+		stack.push(rootNode);
+		int visited = 0; //nodes walked, for the metrics
 		
-		// Multiple common prefix words
-		} else {
+		while(!stack.isEmpty()){
 			
 			// Initializing Pointers
+			TrieNode ptr = stack.pop();
+			visited++;
 			TrieNode ptrFC = ptr.firstChild;
 			TrieNode ptrSibling = ptr.sibling;
 			
-			if(ptrFC == null){
-				compList.add(wordCL); //adds word to completion list ArrayList
-				
-			} else if(ptrFC != null){
-				addToCL(ptrFC, rootNode, compList);
+			// Siblings of the common prefix node have other prefixes
+			if(ptr != rootNode && ptrSibling != null){
+				stack.push(ptrSibling);
 			}
 			
-			if(ptrSibling != null){
-				addToCL(ptrSibling, rootNode, compList);
+			// Terminal -> its substring ends its word, so the whole word is a completion
+			if(ptr.terminal){
+				compList.add(words.get(ptr.substr.wordIndex)); //adds word to completion list ArrayList
+			}
+			if(ptrFC != null){
+				stack.push(ptrFC);
 			}
 			
 		}
 		
+		if(TrieMetrics.ENABLED){
+			metrics.visited(visited);
+		}
+		
 	} //end of addToCL method
 	
 	/**
 	 * Inserts a word into this trie. Converts to lower case before adding.
-	 * The word is first added to the words array list, then inserted into the trie.
+	 * The word is first added to the words registry, then inserted into the trie.
+	 * A word that is already in the trie is not inserted again. The word is
+	 * inserted with weight 0 (see insertWord(String, int)).
 	 * 
 	 * @param word Word to be inserted.
 	 */
 	public void insertWord(String word) {
 		
+		insertWord(word, 0);
+		
+	} //end of insertWord method
+	
+	/**
+	 * Inserts a word into this trie with a weight (e.g. how often it is searched for),
+	 * which topK uses to rank completions. Converts to lower case before adding.
+	 * A word that is already in the trie is not inserted again; instead, the weight
+	 * is added to the weight it already has (stopping at Integer.MAX_VALUE). A word
+	 * that is empty once trimmed is not inserted.
+	 * 
+	 * Inserts are serialized, but never block readers: completionList, completions and
+	 * topK can run in other threads during an insert, and see the trie either before or
+	 * after the word is added (see replaceChild).
+	 * 
+	 * @param word Word to be inserted.
+	 * @param weight Weight to add to the word, 0 or more.
+	 * @throws IllegalArgumentException If weight is negative
+	 */
+	public synchronized void insertWord(String word, int weight) {
+		
+		// Weights only go up -> the maximum weights kept on the nodes stay valid
+		if(weight < 0){
+			throw new IllegalArgumentException("Negative weight: " + weight);
+		}
+		
 		// Clean up input -> convert to lower case and trim spaces
 		word = word.toLowerCase().trim();
 		
+		// Empty word -> nothing to insert
+		if(word.isEmpty()){
+			return;
+		}
+		
+		// Instrumentation on -> JFR event timing this insert
+		TrieMetrics.InsertEvent event = null;
+		if(TrieMetrics.ENABLED){
+			metrics.insert();
+			event = new TrieMetrics.InsertEvent();
+			event.begin();
+		}
+		
+		// Word already in the trie -> only its weight changes
+		if(searchArrList(word)){
+			addWeight(word, weight);
+			if(TrieMetrics.ENABLED){
+				commitInsert(event, word, weight, false);
+			}
+			return;
+		}
+		
 		// Initializing Variables
 		String insWord = word;
-		words.add(insWord); //adding word to 'words' ArrayList
+		int wordIndex = words.register(insWord); //adding word to 'words' registry -> its index
 		short indexStart;
 		short indexEnd;
-		int firstWordIndex = 0;
-		
-		// Finds/prints inserted word and its ArrayList index
-		//int wordIndex = this.findWordIndex(insWord);
-		//System.out.println("Word: " + insWord + " (Array Index: " + wordIndex + ")");
+		int firstWordIndex = wordIndex;
 		
 		// Root's First Child is empty -> create new firstChild
 		if(root.firstChild == null){
@@ -510,109 +732,1756 @@ public class Trie {
 			// Creating root's firstChild -> Indexes & TrieNode
 			Indexes childIndexes = new Indexes(firstWordIndex, indexStart, indexEnd);
 			TrieNode childNode = new TrieNode(childIndexes, null, null);
+			childNode.terminal = true;
 			
 			// Root's firstChild -> childNode
 			root.firstChild = childNode;
 			
-			//System.out.println("-> [IF] Root's firstChild: " + childNode.substr);
-			//System.out.println("");
-		
-		// Otherwise -> send to private recursive insert method
+		// Otherwise -> send to private insert method
 		} else {
 			
-			//System.out.println("-> [ELSE] firstChild's Siblings or Common Prefixes");
-			//System.out.println("");
-			
 			// Recursively Insert Word
-			insertWordRecurs(root, insWord, insWord);	
+			insertWordIter(root, insWord, wordIndex);	
 			
 		}
 		
-	} //end of insertWord method
+		// Weight of the new word, and one more word under each node on its path
+		addWeight(insWord, weight);
+		addCount(insWord);
+		
+		// Cached completion lists of the word's prefixes are out of date
+		PrefixCache prefixCache = cache;
+		if(prefixCache != null){
+			prefixCache.invalidate(insWord);
+		}
+		
+		if(TrieMetrics.ENABLED){
+			commitInsert(event, insWord, weight, true);
+		}
+		
+	} //end of insertWord (weight) method
 	
 	/**
-	 * Given a string prefix, returns its "completion list", i.e. all the words in the trie
-	 * that start with this prefix. For instance, if the tree had the words bear, bull, stock, and bell,
-	 * the completion list for prefix "b" would be bear, bull, and bell; for prefix "be" would be
-	 * bear and bell; and for prefix "bell" would be bell. (The last example shows that a prefix can be
-	 * an entire word.) The order of returned words DOES NOT MATTER. So, if the list contains bear and
-	 * bell, the returned list can be either [bear,bell] or [bell,bear]
+	 * Ends an insert's JFR event and records it, if the recording asks for it.
 	 * 
-	 * @param prefix Prefix to be completed with words in trie
-	 * @return List of all words in tree that start with the prefix, order of words in list does not matter.
-	 *         If there is no word in the tree that has this prefix, null is returned.
+	 * @param event, word, weight, added (false if the word was already in the trie)
 	 */
-	public ArrayList<String> completionList(String prefix) {
+	private static void commitInsert(TrieMetrics.InsertEvent event, String word, int weight, boolean added) {
+		
+		event.end();
+		if(event.shouldCommit()){
+			event.word = word;
+			event.weight = weight;
+			event.added = added;
+			event.commit();
+		}
+		
+	} //end of commitInsert method
+	
+	/**
+	 * Removes a word from this trie. Converts to lower case before removing. The word's
+	 * leaf is unlinked from its parent, and a parent left with a single child is merged
+	 * with that child, so that the trie stays compressed: after removing, the trie has
+	 * the same nodes as one built from the remaining words. Nodes that pointed at the
+	 * word's characters are pointed at another word below them. A word that is a prefix
+	 * of other words keeps its node, which is no longer terminal (or is merged with its
+	 * only child).
+	 * 
+	 * As with insertWord, readers are not blocked and see the trie either before or after
+	 * the removal. The removed word's id is kept until 1 in RENUMBER_FRACTION ids belong
+	 * to removed words; then the remaining words are given new ids with no gaps (see
+	 * renumberWords), and readers that were running at the time start over.
+	 * 
+	 * @param word Word to be removed.
+	 * @return True if the word was in the trie; false otherwise
+	 */
+	public synchronized boolean removeWord(String word) {
 		
 		// Clean up input -> convert to lower case and trim spaces
-		prefix = prefix.toLowerCase().trim();
+		word = word.toLowerCase().trim();
 		
-		// Initializing Variables
-		ArrayList<String> compList = new ArrayList<String>();
-		String optic = "";
+		// Word not in the trie -> nothing to remove
+		int wordIndex = findWordIndex(word);
+		if(wordIndex == -1){
+			return false;
+		}
 		
-		// Initializing Pointers
-		TrieNode ptr = root.firstChild;
-		TrieNode cpNode = null;
+		// Initializing Variables -> nodes from the root down to the word's node
+		TrieNode[] path = new TrieNode[word.length() + 2];
+		int pathLength = pathTo(word, path);
+		TrieNode leaf = path[pathLength-1];
+		TrieNode parent = path[pathLength-2];
+		int last = pathLength - 2; //deepest node left on the path
 		
-		// Case 1 -> Trie is empty (return null)
-		if(root.firstChild == null){
+		// Parent (not the root, nor a word's node) with one other child -> parent and that child can become one node
+		TrieNode other = (parent == root || parent.terminal) ? null : onlyOtherChild(parent, leaf);
+		
+		// Word's node has one child -> the node and its child become one node, the child's word
+		if(leaf.firstChild != null && leaf.firstChild.sibling == null){
 			
-			//System.out.println("-> Trie is empty");
-			return null;
+			TrieNode child = leaf.firstChild;
+			Indexes merged = new Indexes(child.substr.wordIndex, leaf.substr.startIndex, child.substr.endIndex);
+			TrieNode mergedNode = new TrieNode(merged, child.firstChild, null);
+			mergedNode.children = child.children;
+			mergedNode.terminal = child.terminal;
+			mergedNode.weight = child.weight;
+			mergedNode.maxWeight = child.maxWeight;
+			mergedNode.count = child.count;
+			replaceChild(parent, leaf, mergedNode);
 			
-		}
-		
+		// Word's node has more children -> a copy that is not terminal (pointed at a word below) takes its place
+		} else if(leaf.firstChild != null){
+			
+			TrieNode copy = new TrieNode(new Indexes(leaf.firstChild.substr.wordIndex, leaf.substr.startIndex, leaf.substr.endIndex), leaf.firstChild, null);
+			copy.children = leaf.children;
+			copy.maxWeight = leaf.maxWeight;
+			copy.count = leaf.count;
+			replaceChild(parent, leaf, copy);
+			path[pathLength-1] = copy;
+			last = pathLength - 1; //one word less under it too, and its weight is gone
+			
+		// Leaf and a parent to merge -> merged node takes parent's place, with the other child's word, children and weights
+		} else if(other != null){
+			
+			Indexes merged = new Indexes(other.substr.wordIndex, parent.substr.startIndex, other.substr.endIndex);
+			TrieNode mergedNode = new TrieNode(merged, other.firstChild, null);
+			mergedNode.children = other.children;
+			mergedNode.terminal = other.terminal;
+			mergedNode.weight = other.weight;
+			mergedNode.maxWeight = other.maxWeight;
+			mergedNode.count = other.count;
+			replaceChild(path[pathLength-3], parent, mergedNode);
+			last = pathLength - 3;
+			
+		// Otherwise -> only the leaf goes
+		} else {
+			
+			unlinkChild(parent, leaf);
+			
+		}
+		
+		// Going up the path -> one word less, moving nodes off the removed word, and lowering maximum weights
+		boolean weightsDone = false;
+		for(int i = last; i >= 0; i--){
+			TrieNode node = path[i];
+			node.count--;
+			if(node != root && node.substr.wordIndex == wordIndex){
+				node.substr = new Indexes(node.firstChild.substr.wordIndex, node.substr.startIndex, node.substr.endIndex);
+			}
+			if(!weightsDone){
+				int max = node.weight;
+				for(TrieNode child = node.firstChild; child != null; child = child.sibling){
+					max = Math.max(max, child.maxWeight);
+				}
+				weightsDone = (max == node.maxWeight); //nodes further up are not affected either
+				node.maxWeight = max;
+			}
+		}
+		
+		// Word leaves the registry -> renumbering once enough ids are unused
+		words.remove(word);
+		if(words.removed() * RENUMBER_FRACTION >= words.size()){
+			renumberWords();
+		}
+		
+		// Cached completion lists of the word's prefixes are out of date
+		PrefixCache prefixCache = cache;
+		if(prefixCache != null){
+			prefixCache.invalidate(word);
+		}
+		
+		return true;
+		
+	} //end of removeWord method
+	
+	/**
+	 * Finds the only child of parent other than child, if parent has exactly two children.
+	 * 
+	 * @param parent, child
+	 * @return the other child, or null if parent has more than two children
+	 */
+	private TrieNode onlyOtherChild(TrieNode parent, TrieNode child) {
+		
+		if(parent.children != null){
+			return null; //indexed -> at least ChildIndex.MIN_CHILDREN children
+		}
+		TrieNode first = parent.firstChild;
+		TrieNode second = first.sibling;
+		if(second == null || second.sibling != null){
+			return null;
+		}
+		
+		return (first == child) ? second : first;
+		
+	} //end of onlyOtherChild method
+	
+	/**
+	 * Takes child out of parent's firstChild/sibling list and child index. The child's own
+	 * sibling link is left as it is, for readers that are still on it. The index is dropped
+	 * once parent has fewer than ChildIndex.MIN_CHILDREN - 1 children.
+	 * 
+	 * @param parent, child
+	 */
+	private void unlinkChild(TrieNode parent, TrieNode child) {
+		
+		// Linking child's previous sibling (or parent) to child's next sibling
+		TrieNode prev = null;
+		for(TrieNode ptr = parent.firstChild; ptr != child; ptr = ptr.sibling){
+			prev = ptr;
+		}
+		if(prev == null){
+			parent.firstChild = child.sibling;
+		} else {
+			prev.sibling = child.sibling;
+		}
+		
+		// Publishing an updated copy of the index, or none if there are few children left
+		if(parent.children != null){
+			ChildIndex index = parent.children.copy();
+			index.remove(nodeChar(child, child.substr.startIndex));
+			parent.children = (index.size() < ChildIndex.MIN_CHILDREN - 1) ? null : index;
+		}
+		
+	} //end of unlinkChild method
+	
+	/**
+	 * Gives the words of the trie new ids with no gaps (dropping the slots of removed
+	 * words), and points every node at the new ids. Readers that run at the same time
+	 * may mix old and new ids, so renumberings is odd while this goes on, and readers
+	 * that see it change start over (see startRead).
+	 */
+	private void renumberWords() {
+		
+		renumberings++; //odd -> renumbering
+		
+		// Compacted registry -> new id of each old id
+		int[] newIds = new int[words.size()];
+		WordRegistry compacted = words.compact(newIds);
+		
+		// Every node -> new id of its word
+		NodeStack stack = STACKS.get();
+		stack.clear();
+		if(root.firstChild != null){
+			stack.push(root.firstChild);
+		}
+		while(!stack.isEmpty()){
+			TrieNode node = stack.pop();
+			Indexes old = node.substr;
+			node.substr = new Indexes(newIds[old.wordIndex], old.startIndex, old.endIndex);
+			if(node.sibling != null){
+				stack.push(node.sibling);
+			}
+			if(node.firstChild != null){
+				stack.push(node.firstChild);
+			}
+		}
+		words = compacted;
+		
+		renumberings++; //even -> done
+		
+	} //end of renumberWords method
+	
+	/**
+	 * Starts a read of the trie by a reader that takes no lock. Waits for a renumbering
+	 * of the words that is going on (it holds the trie's lock) to finish.
+	 * 
+	 * @return renumbering count to pass to readValid once the read is done
+	 */
+	private int startRead() {
+		
+		int count = renumberings;
+		if((count & 1) != 0){
+			synchronized(this){
+				count = renumberings;
+			}
+		}
+		
+		return count;
+		
+	} //end of startRead method
+	
+	/**
+	 * Tells whether a read started by startRead saw consistent word ids, i.e. whether no
+	 * renumbering started since. If not, the read must be done again (it may also have
+	 * failed with an exception, which is then not a real error).
+	 * 
+	 * @param count renumbering count returned by startRead
+	 * @return True if the read is valid; false otherwise
+	 */
+	private boolean readValid(int count) {
+		
+		return renumberings == count;
+		
+	} //end of readValid method
+	
+	/**
+	 * Turns on caching of completion lists (see PrefixCache), replacing the cache if
+	 * there already is one.
+	 * 
+	 * @param maxWords Maximum total number of words in the cached lists
+	 * @throws IllegalArgumentException If maxWords is not positive
+	 */
+	public synchronized void enableCache(int maxWords) {
+		
+		if(maxWords <= 0){
+			throw new IllegalArgumentException("Cache size must be positive: " + maxWords);
+		}
+		cache = new PrefixCache(maxWords);
+		
+	} //end of enableCache method
+	
+	/**
+	 * Turns off caching of completion lists, dropping the cached lists.
+	 */
+	public synchronized void disableCache() {
+		
+		cache = null;
+		
+	} //end of disableCache method
+	
+	/**
+	 * Returns the cache of completion lists, with its hit, miss and eviction counters.
+	 * 
+	 * @return The cache, or null if caching is off
+	 */
+	public PrefixCache getCache() {
+		
+		return cache;
+		
+	} //end of getCache method
+	
+	/**
+	 * Returns the counters of what this trie does: nodes visited, characters compared,
+	 * sibling lists walked, depths of prefixes, and sizes of completion lists. They are only
+	 * kept if the JVM is started with -Dstructures.trie.metrics=true (see TrieMetrics).
+	 * 
+	 * @return The counters, or null if instrumentation is off
+	 */
+	public TrieMetrics getMetrics() {
+		
+		return metrics;
+		
+	} //end of getMetrics method
+	
+	/**
+	 * Walks this trie to report on its shape (see TrieStats): numbers of nodes and words,
+	 * depths, children per node, and estimated bytes per node. Inserts and removes wait
+	 * until the walk is done.
+	 * 
+	 * @return Report on this trie
+	 */
+	public TrieStats stats() {
+		
+		return new TrieStats(this);
+		
+	} //end of stats method
+	
+	/**
+	 * Returns a read-only copy of this trie in a succinct encoding (see FrozenTrie), for
+	 * a dictionary that is done being built: it answers completionList and contains in a
+	 * fraction of the memory of the TrieNode graph and word registry. Changes made to this
+	 * trie afterwards do not show in the copy.
+	 * 
+	 * @return Frozen copy of this trie
+	 */
+	public FrozenTrie freeze() {
+		
+		return new FrozenTrie(this);
+		
+	} //end of freeze method
+	
+	/**
+	 * Builds a suffix index over the words of this trie (see SuffixIndex), which finds the
+	 * words that contain a pattern anywhere, not only at the start. Changes made to this
+	 * trie afterwards do not show in the index.
+	 * 
+	 * @return Suffix index of the words in this trie
+	 */
+	public SuffixIndex buildSuffixIndex() {
+		
+		return new SuffixIndex(this);
+		
+	} //end of buildSuffixIndex method
+	
+	/**
+	 * Adds to the weight of a word in the trie, and raises the maximum weight of every
+	 * node on the way to the word's node if needed. The sum stops at Integer.MAX_VALUE
+	 * instead of overflowing, which would make the weight negative and leave the word
+	 * ranked above heavier ones.
+	 * 
+	 * @param word, weight
+	 */
+	private void addWeight(String word, int weight) {
+		
+		// Finding the word's node (the one its last character is in) -> its new weight
+		TrieNode wordNode = root;
+		while(wordNode == root || wordNode.substr.endIndex < word.length() - 1){
+			wordNode = findChild(wordNode, word.charAt(wordNode == root ? 0 : wordNode.substr.endIndex + 1));
+		}
+		int newWeight = (wordNode.weight > Integer.MAX_VALUE - weight) ? Integer.MAX_VALUE : wordNode.weight + weight;
+		wordNode.weight = newWeight;
+		
+		// Raising maximum weights from the root down to the word's node
+		TrieNode ptr = root;
+		while(ptr != null){
+			if(ptr.maxWeight < newWeight){
+				ptr.maxWeight = newWeight;
+			}
+			ptr = (ptr == wordNode) ? null : findChild(ptr, word.charAt(ptr == root ? 0 : ptr.substr.endIndex + 1));
+		}
+		
+	} //end of addWeight method
+	
+	/**
+	 * Adds one to the word count of every node from the root down to a new word's node.
+	 * Done once the word is linked in, so a reader may see a count one short, never one over.
+	 * 
+	 * @param word
+	 */
+	void addCount(String word) {
+		
+		TrieNode ptr = root;
+		while(ptr != null){
+			ptr.count++;
+			boolean wordEnds = (ptr != root && ptr.substr.endIndex == word.length() - 1);
+			ptr = wordEnds ? null : findChild(ptr, word.charAt(ptr == root ? 0 : ptr.substr.endIndex + 1));
+		}
+		
+	} //end of addCount method
+	
+	/**
+	 * Builds a trie from words in sorted order, in a single pass. Each word only shares
+	 * a prefix with the previous word's path (the rightmost path of the trie), so the
+	 * longest common prefix with the previous word says where the new word branches off,
+	 * without walking down from the root or comparing against siblings. The trie built is
+	 * the same as the one built by calling insertWord on each word in the same order.
+	 * Words are converted to lower case and trimmed, as in insertWord; duplicates, and
+	 * words that are empty once trimmed, are skipped.
+	 * 
+	 * @param sortedWords Words in sorted order (after lower case conversion)
+	 * @return Trie with all the words
+	 * @throws IllegalArgumentException If the words are not in sorted order
+	 */
+	public static Trie buildFromSorted(Iterable<String> sortedWords) {
+		
+		// Initializing Variables
+		Trie trie = new Trie();
+		String prevWord = null;
+		TrieNode[] path = new TrieNode[16]; //rightmost path, path[0] is the root
+		int pathLength = 1;
+		path[0] = trie.root;
+		
+		for(String word : sortedWords){
+			
+			// Clean up input -> convert to lower case and trim spaces
+			word = word.toLowerCase().trim();
+			
+			// Empty word -> nothing to insert
+			if(word.isEmpty()){
+				continue;
+			}
+			
+			// Duplicate or out of order words
+			if(prevWord != null){
+				int order = word.compareTo(prevWord);
+				if(order == 0){
+					continue;
+				}
+				if(order < 0){
+					throw new IllegalArgumentException("Words are not sorted: " + prevWord + " before " + word);
+				}
+			}
+			int wordIndex = trie.words.register(word);
+			int wordEnd = word.length() - 1;
+			
+			// Longest common prefix with the previous word
+			int lcp = 0;
+			if(prevWord != null){
+				int max = Math.min(word.length(), prevWord.length());
+				while(lcp < max && word.charAt(lcp) == prevWord.charAt(lcp)){
+					lcp++;
+				}
+			}
+			
+			// Deepest node of the path whose substring starts at or before the lcp
+			while(pathLength > 1 && path[pathLength-1].substr.startIndex > lcp){
+				pathLength--;
+			}
+			TrieNode node = path[pathLength-1];
+			TrieNode leaf = new TrieNode(new Indexes(wordIndex, (short)lcp, (short)wordEnd), null, null);
+			leaf.terminal = true;
+			
+			// Case 1 - branches off at the node's first character (or at the root) -> new last child of its parent (sorted input)
+			if(node == trie.root || node.substr.startIndex == lcp){
+				if(node != trie.root){
+					pathLength--;
+				}
+				trie.addChild(path[pathLength-1], leaf);
+			
+			// Case 2 - branches off inside the node's substring -> split the node, same as insertWordIter
+			} else if(lcp <= node.substr.endIndex){
+				Indexes oldIndexes = node.substr;
+				node.substr = new Indexes(oldIndexes.wordIndex, oldIndexes.startIndex, (short)(lcp - 1));
+				TrieNode remNode = new TrieNode(new Indexes(oldIndexes.wordIndex, (short)lcp, oldIndexes.endIndex), node.firstChild, leaf);
+				remNode.children = node.children;
+				remNode.terminal = node.terminal;
+				remNode.weight = node.weight;
+				remNode.maxWeight = node.maxWeight;
+				remNode.count = node.count;
+				node.terminal = false;
+				node.weight = 0;
+				node.firstChild = remNode;
+				node.children = null;
+			
+			// Case 3 - previous word is a prefix of this word -> left to insertWordIter (the word goes on below it)
+			} else {
+				trie.insertWordIter(trie.root, word, wordIndex);
+				if(path.length < word.length() + 2){
+					path = new TrieNode[word.length() + 2];
+				}
+				pathLength = trie.pathTo(word, path);
+				for(int i = 0; i < pathLength; i++){
+					path[i].count++;
+				}
+				prevWord = word;
+				continue;
+			}
+			
+			// New word's leaf ends the rightmost path
+			if(pathLength == path.length){
+				TrieNode[] newPath = new TrieNode[path.length * 2];
+				System.arraycopy(path, 0, newPath, 0, pathLength);
+				path = newPath;
+			}
+			path[pathLength++] = leaf;
+			for(int i = 0; i < pathLength; i++){
+				path[i].count++; //one more word under each node of the path
+			}
+			prevWord = word;
+		}
+		
+		return trie;
+		
+	} //end of buildFromSorted method
+	
+	/**
+	 * Builds a trie from a words file in the format read by TrieApp: the number of words
+	 * on the first line, then one word per line. The words are sorted first unless they
+	 * already are (the whole list is held in memory anyway, as the trie's words).
+	 * 
+	 * @param wordsFile File with the words
+	 * @return Trie with all the words
+	 * @throws IOException If the file cannot be read
+	 */
+	public static Trie buildFromSortedFile(File wordsFile) throws IOException {
+		
+		// Reading words -> checking whether they are sorted on the way
+		Scanner sc = new Scanner(wordsFile);
+		int numWords = sc.nextInt();
+		ArrayList<String> fileWords = new ArrayList<String>(numWords);
+		boolean sorted = true;
+		for(int i = 0; i < numWords; i++){
+			String word = sc.next().toLowerCase().trim();
+			if(!fileWords.isEmpty() && word.compareTo(fileWords.get(fileWords.size()-1)) < 0){
+				sorted = false;
+			}
+			fileWords.add(word);
+		}
+		sc.close();
+		
+		// Not sorted -> sort
+		if(!sorted){
+			Collections.sort(fileWords);
+		}
+		
+		return buildFromSorted(fileWords);
+		
+	} //end of buildFromSortedFile method
+	
+	/**
+	 * Builds a trie from words in any order, on the threads of a fork/join pool. The words
+	 * are partitioned by first character, and the partitions (split further by the next
+	 * characters when they are large) are built at the same time, then linked under the
+	 * root. The trie built holds the same words in the same nodes as the one built by calling
+	 * insertWord on each word in the same order, so completion lists come out the same;
+	 * only the ids the words get in the trie differ (see ParallelBuild).
+	 * Words are converted to lower case and trimmed, as in insertWord; duplicates, and
+	 * words that are empty once trimmed, are skipped.
+	 * 
+	 * @param allWords Words to be inserted
+	 * @param pool Pool whose threads build the trie
+	 * @return Trie with all the words
+	 */
+	public static Trie buildParallel(Collection<String> allWords, ForkJoinPool pool) {
+		
+		return ParallelBuild.build(allWords, pool);
+		
+	} //end of buildParallel method
+	
+	/**
+	 * Builds a trie from words in any order, on the threads of the common fork/join pool
+	 * (see buildParallel(Collection, ForkJoinPool)).
+	 * 
+	 * @param allWords Words to be inserted
+	 * @return Trie with all the words
+	 */
+	public static Trie buildParallel(Collection<String> allWords) {
+		
+		return ParallelBuild.build(allWords, ForkJoinPool.commonPool());
+		
+	} //end of buildParallel (common pool) method
+	
+	/**
+	 * Fills path with the nodes from the root down to the leaf of a word in the trie.
+	 * 
+	 * @param word, path (at least as long as the path; path[0] is set to the root)
+	 * @return number of nodes in the path
+	 */
+	private int pathTo(String word, TrieNode[] path) {
+		
+		int pathLength = 0;
+		path[pathLength++] = root;
+		TrieNode ptr = findChild(root, word.charAt(0));
+		while(ptr != null){
+			path[pathLength++] = ptr;
+			int next = ptr.substr.endIndex + 1;
+			ptr = next < word.length() ? findChild(ptr, word.charAt(next)) : null;
+		}
+		
+		return pathLength;
+		
+	} //end of pathTo method
+	
+	/**
+	 * Given a string prefix, returns its "completion list", i.e. all the words in the trie
+	 * that start with this prefix. For instance, if the tree had the words bear, bull, stock, and bell,
+	 * the completion list for prefix "b" would be bear, bull, and bell; for prefix "be" would be
+	 * bear and bell; and for prefix "bell" would be bell. (The last example shows that a prefix can be
+	 * an entire word.)
+	 * 
+	 * Siblings are kept in order of first character, so the words come out sorted: [bear,bell].
+	 * 
+	 * With caching on (see enableCache), a list computed for a prefix is kept until a word
+	 * starting with the prefix is inserted, and later calls for the prefix return a copy of it.
+	 * 
+	 * @param prefix Prefix to be completed with words in trie
+	 * @return List of all words in tree that start with the prefix, in sorted order.
+	 *         If there is no word in the tree that has this prefix, null is returned.
+	 */
+	public ArrayList<String> completionList(String prefix) {
+		
+		// Clean up input -> convert to lower case and trim spaces
+		prefix = prefix.toLowerCase().trim();
+		
+		// Initializing Variables
+		ArrayList<String> compList = null;
+		PrefixCache prefixCache = cache;
+		long cacheVersion = 0;
+		
+		// Initializing Pointers
+		TrieNode cpNode = null;
+		
+		// Instrumentation on -> JFR event timing this completion list
+		TrieMetrics.CompletionEvent event = null;
+		if(TrieMetrics.ENABLED){
+			event = new TrieMetrics.CompletionEvent();
+			event.begin();
+		}
+		
+		// Cached list -> no walk
+		if(prefixCache != null){
+			compList = prefixCache.get(prefix);
+			if(compList != null){
+				if(TrieMetrics.ENABLED){
+					commitCompletion(event, prefix, compList, true);
+				}
+				return compList;
+			}
+			cacheVersion = prefixCache.version(); //read before walking, see PrefixCache.put
+		}
+		
+		// Walks the trie, again if the words are renumbered meanwhile (see removeWord)
+		while(true){
+			
+			int renumbered = startRead();
+			try {
+				
+				// Case 1 -> Trie is empty (return null)
+				if(root.firstChild == null){
+					
+					compList = null;
+				
+				} else {
+				
+					// Gets the root node with the common prefix
+					cpNode = this.getCommonRNode(root, prefix);
+					
+					// Case 2 -> Prefix found (ArrayList of words with common prefixes)
+					if(cpNode != null){
+						
+						//Finding words with common prefixes -> list is only created once there are results
+						compList = new ArrayList<String>();
+						this.addToCL(cpNode, compList);
+					
+					// Case 3 -> Prefix not found (null)
+					} else {
+						
+						compList = null;
+						
+					}
+				}
+				
+			} catch(RuntimeException e) {
+				if(readValid(renumbered)){
+					throw e;
+				}
+				continue;
+			}
+			
+			if(readValid(renumbered)){
+				break;
+			}
+		}
+		
+		if(compList != null && prefixCache != null){
+			prefixCache.put(prefix, compList, cacheVersion);
+		}
+		
+		if(TrieMetrics.ENABLED){
+			commitCompletion(event, prefix, compList, false);
+		}
+		
+		return compList; //ArrayList filled with words that share the prefix, or null
+
+	} //end of completionList method
+	
+	/**
+	 * Counts a completion list, and ends its JFR event and records it, if the recording
+	 * asks for it.
+	 * 
+	 * @param event, prefix, compList (null if there are no completions), cached (true if
+	 *        the list came from the cache)
+	 */
+	private void commitCompletion(TrieMetrics.CompletionEvent event, String prefix, ArrayList<String> compList, boolean cached) {
+		
+		int results = (compList == null) ? 0 : compList.size();
+		metrics.completion(results);
+		event.end();
+		if(event.shouldCommit()){
+			event.prefix = prefix;
+			event.results = results;
+			event.cached = cached;
+			event.commit();
+		}
+		
+	} //end of commitCompletion method
+	
+	/**
+	 * Given a string prefix, returns at most limit words of its completion list. The
+	 * words are found one at a time (see completions), so the walk over the trie stops
+	 * as soon as limit words are found.
+	 * 
+	 * @param prefix Prefix to be completed with words in trie
+	 * @param limit Maximum number of words to return
+	 * @return List of at most limit words in tree that start with the prefix, in the same order
+	 *         as completionList. If there is no word in the tree that has this prefix, or limit
+	 *         is 0 or less, null is returned.
+	 */
+	public ArrayList<String> completionList(String prefix, int limit) {
+		
+		// No room for any word
+		if(limit <= 0){
+			return null;
+		}
+		
+		// Walks the trie, again if the words are renumbered meanwhile (see removeWord)
+		while(true){
+			int renumbered = startRead();
+			try {
+				
+				// Initializing Variables
+				Iterator<String> completions = completions(prefix);
+				ArrayList<String> compList = null;
+				
+				// Pulling words until the limit is reached
+				while(completions.hasNext()){
+					if(compList == null){
+						compList = new ArrayList<String>();
+					} else if(compList.size() >= limit){
+						break;
+					}
+					compList.add(completions.next());
+				}
+				
+				if(readValid(renumbered)){
+					return compList;
+				}
+				
+			} catch(RuntimeException e) {
+				if(readValid(renumbered)){
+					throw e;
+				}
+			}
+		}
+		
+	} //end of completionList (limit) method
+	
+	/**
+	 * Given a string prefix, returns the number of words in the trie that start with it,
+	 * without building the completion list: every node keeps the number of words under it,
+	 * so this only walks down to the prefix.
+	 * 
+	 * @param prefix Prefix to be completed with words in trie
+	 * @return Number of words in tree that start with the prefix (0 if there are none)
+	 */
+	public int countWithPrefix(String prefix) {
+		
+		// Clean up input -> convert to lower case and trim spaces
+		prefix = prefix.toLowerCase().trim();
+		
+		// Walks the trie, again if the words are renumbered meanwhile (see removeWord)
+		while(true){
+			int renumbered = startRead();
+			try {
+				TrieNode cpNode = (root.firstChild == null) ? null : this.getCommonRNode(root, prefix);
+				int count = (cpNode == null) ? 0 : cpNode.count;
+				if(readValid(renumbered)){
+					return count;
+				}
+			} catch(RuntimeException e) {
+				if(readValid(renumbered)){
+					throw e;
+				}
+			}
+		}
+		
+	} //end of countWithPrefix method
+	
+	/**
+	 * Returns the longest word in the trie that is a prefix of the input (or the input
+	 * itself), e.g. for routing a path to the longest registered route. For instance, with
+	 * the words b, be, bear and bell, the longest prefix of "bears" is bear, and that of
+	 * "bed" is be. The trie is walked down once along the input, comparing characters in
+	 * place, and the word returned is the one held by the trie: nothing is allocated
+	 * (with the words off the heap, though, the word returned is a new String, see
+	 * Trie(boolean)).
+	 * 
+	 * @param input Input to match words against (converted to lower case and trimmed, which
+	 *        makes no copy of an input that already is)
+	 * @return Longest word that is a prefix of the input, or null if no word is
+	 */
+	public String longestPrefixOf(String input) {
+		
+		// Clean up input -> convert to lower case and trim spaces
+		input = input.toLowerCase().trim();
+		
+		// Walks the trie, again if the words are renumbered meanwhile (see removeWord)
+		while(true){
+			int renumbered = startRead();
+			try {
+				
+				// Going down word by word -> the last one passed is the longest
+				TrieNode longest = null;
+				for(TrieNode node = nextWordNode(root, input); node != null; node = nextWordNode(node, input)){
+					longest = node;
+				}
+				String word = (longest == null) ? null : words.get(longest.substr.wordIndex);
+				
+				if(readValid(renumbered)){
+					return word;
+				}
+				
+			} catch(RuntimeException e) {
+				if(readValid(renumbered)){
+					throw e;
+				}
+			}
+		}
+		
+	} //end of longestPrefixOf method
+	
+	/**
+	 * Returns all the words in the trie that are prefixes of the input (or the input
+	 * itself), shortest first. For instance, with the words b, be, bear and bell, the
+	 * prefixes of "bears" are b, be and bear. Same walk as longestPrefixOf; only the list
+	 * is allocated, once there is a word to put in it.
+	 * 
+	 * @param input Input to match words against (converted to lower case and trimmed)
+	 * @return List of the words that are prefixes of the input, shortest first.
+	 *         If there are none, null is returned.
+	 */
+	public ArrayList<String> prefixesOf(String input) {
+		
+		// Clean up input -> convert to lower case and trim spaces
+		input = input.toLowerCase().trim();
+		
+		// Walks the trie, again if the words are renumbered meanwhile (see removeWord)
+		while(true){
+			int renumbered = startRead();
+			try {
+				
+				ArrayList<String> prefixes = null;
+				for(TrieNode node = nextWordNode(root, input); node != null; node = nextWordNode(node, input)){
+					if(prefixes == null){
+						prefixes = new ArrayList<String>();
+					}
+					prefixes.add(words.get(node.substr.wordIndex));
+				}
+				
+				if(readValid(renumbered)){
+					return prefixes;
+				}
+				
+			} catch(RuntimeException e) {
+				if(readValid(renumbered)){
+					throw e;
+				}
+			}
+		}
+		
+	} //end of prefixesOf method
+	
+	/**
+	 * Finds the words in the trie that are prefixes of the input, like prefixesOf, but
+	 * gives their lengths (the word is input.substring(0, length)) in an array the caller
+	 * reuses, so that nothing at all is allocated: e.g. for a tokenizer trying every token
+	 * that starts at a position of its text.
+	 * 
+	 * @param input Input to match words against (converted to lower case and trimmed)
+	 * @param lengths Filled in with the lengths of the words found, shortest first, as many
+	 *        as it has room for (input.length() entries are always enough)
+	 * @return Number of words that are prefixes of the input (may be more than lengths.length)
+	 */
+	public int prefixesOf(String input, int[] lengths) {
+		
+		// Clean up input -> convert to lower case and trim spaces
+		input = input.toLowerCase().trim();
+		
+		// Walks the trie, again if the words are renumbered meanwhile (see removeWord)
+		while(true){
+			int renumbered = startRead();
+			try {
+				
+				int count = 0;
+				for(TrieNode node = nextWordNode(root, input); node != null; node = nextWordNode(node, input)){
+					if(count < lengths.length){
+						lengths[count] = node.substr.endIndex + 1;
+					}
+					count++;
+				}
+				
+				if(readValid(renumbered)){
+					return count;
+				}
+				
+			} catch(RuntimeException e) {
+				if(readValid(renumbered)){
+					throw e;
+				}
+			}
+		}
+		
+	} //end of prefixesOf (lengths) method
+	
+	/**
+	 * Goes down from node along the input to the next terminal node, i.e. the next word
+	 * that is a prefix of the input, comparing characters in place (a node's start index
+	 * is also the index of the matching character in the input). Calling it again from the
+	 * node returned goes on from there, so finding all the words is one walk down.
+	 * 
+	 * @param node (the root, or a node on the input's path), input
+	 * @return next terminal node on the input's path below node, or null if there is none
+	 */
+	private TrieNode nextWordNode(TrieNode node, String input) {
+		
+		// Initializing Variables
+		int inputLength = input.length();
+		
+		while(true){
+			
+			int pos = (node == root) ? 0 : node.substr.endIndex + 1; //index of the input's next character
+			
+			// Input used up, or no child starts with its next character -> no more words
+			if(pos >= inputLength){
+				return null;
+			}
+			TrieNode child = findChild(node, input.charAt(pos));
+			if(child == null){
+				return null;
+			}
+			
+			// Child's substring must be all in the input
+			int end = child.substr.endIndex;
+			if(end >= inputLength){
+				return null;
+			}
+			if(pos < end && nodeMismatch(child, pos + 1, end + 1, input) <= end){
+				return null;
+			}
+			
+			// Terminal -> its word is a prefix of the input
+			if(child.terminal){
+				return child;
+			}
+			node = child;
+		}
+		
+	} //end of nextWordNode method
+	
+	/**
+	 * Given a string prefix, returns the word at position k of its completion list (in the
+	 * order of completionList, counting from 0). Whole subtrees before the word are skipped
+	 * using the number of words under each node, so the cost is the length of the prefix
+	 * plus, at each level below it, the number of children passed over.
+	 * 
+	 * @param prefix Prefix to be completed with words in trie
+	 * @param k Position of the word in the completion list
+	 * @return Word at position k, or null if fewer than k+1 words start with the prefix
+	 */
+	public String kthWordWithPrefix(String prefix, int k) {
+		
+		ArrayList<String> page = completionList(prefix, k, 1);
+		
+		return (page == null) ? null : page.get(0);
+		
+	} //end of kthWordWithPrefix method
+	
+	/**
+	 * Given a string prefix, returns a page of its completion list: at most limit words,
+	 * starting at position offset (in the order of completionList, counting from 0). The
+	 * walk goes straight to the word at offset, skipping whole subtrees before it using the
+	 * number of words under each node (see kthWordWithPrefix), then on for limit words.
+	 * 
+	 * @param prefix Prefix to be completed with words in trie
+	 * @param offset Position of the first word of the page
+	 * @param limit Maximum number of words to return
+	 * @return List of at most limit words, from position offset of the completion list.
+	 *         If there is no word at that position, null is returned.
+	 */
+	public ArrayList<String> completionList(String prefix, int offset, int limit) {
+		
+		// Clean up input -> convert to lower case and trim spaces
+		prefix = prefix.toLowerCase().trim();
+		
+		// Walks the trie, again if the words are renumbered meanwhile (see removeWord)
+		while(true){
+			int renumbered = startRead();
+			try {
+				ArrayList<String> page = pageWalk(prefix, offset, limit);
+				if(readValid(renumbered)){
+					return page;
+				}
+			} catch(RuntimeException e) {
+				if(readValid(renumbered)){
+					throw e;
+				}
+			}
+		}
+		
+	} //end of completionList (page) method
+	
+	/**
+	 * Counted walk for completionList (page). Goes down from the common prefix node to the
+	 * word at offset, pushing the next sibling of each node on the way, so that the stack
+	 * holds what addToCL would still have to visit at that word; then goes on like addToCL.
+	 * 
+	 * @param prefix (converted to lower case and trimmed), offset, limit
+	 * @return the page, or null if there is no word at offset
+	 */
+	private ArrayList<String> pageWalk(String prefix, int offset, int limit) {
+		
 		// Gets the root node with the common prefix
-		cpNode = this.getCommonRNode(ptr, prefix);
-
-		// Case 2 -> Prefix found (return ArrayList of words with common prefixes)
-		if(cpNode != null){
+		if(root.firstChild == null || offset < 0 || limit <= 0){
+			return null;
+		}
+		TrieNode cpNode = this.getCommonRNode(root, prefix);
+		if(cpNode == null || offset >= cpNode.count){
+			return null;
+		}
+		
+		// Initializing Variables
+		NodeStack stack = STACKS.get();
+		stack.clear();
+		TrieNode ptr = cpNode;
+		int skip = offset;
+		
+		// Going down to the word at offset -> skipping whole subtrees before it (a node's own word comes first)
+		while(true){
+			if(ptr.terminal){
+				if(skip == 0 || ptr.firstChild == null){
+					break;
+				}
+				skip--;
+			}
+			TrieNode child = ptr.firstChild;
+			while(child.sibling != null && skip >= child.count){
+				skip -= child.count;
+				child = child.sibling;
+			}
+			if(child.sibling != null){
+				stack.push(child.sibling);
+			}
+			ptr = child;
+		}
+		
+		// Word at offset, then the words after it in addToCL order (starting with the ones below it)
+		ArrayList<String> page = new ArrayList<String>();
+		page.add(words.get(ptr.substr.wordIndex));
+		if(ptr.firstChild != null){
+			stack.push(ptr.firstChild);
+		}
+		while(page.size() < limit && !stack.isEmpty()){
+			ptr = stack.pop();
+			if(ptr.sibling != null){
+				stack.push(ptr.sibling);
+			}
+			if(ptr.terminal){
+				page.add(words.get(ptr.substr.wordIndex));
+			}
+			if(ptr.firstChild != null){
+				stack.push(ptr.firstChild);
+			}
+		}
+		stack.clear();
+		
+		return page;
+		
+	} //end of pageWalk method
+	
+	/**
+	 * Given a string prefix, returns the k words with the highest weights among the words
+	 * that start with the prefix. Nodes are visited best first: a priority queue holds
+	 * nodes by the largest weight under them, so a leaf coming out of the queue outweighs
+	 * everything still in it, and subtrees whose largest weight cannot beat the k-th word
+	 * are never opened. The cost depends on k and the prefix, not on the number of words
+	 * that start with the prefix.
+	 * 
+	 * @param prefix Prefix to be completed with words in trie
+	 * @param k Number of words to return
+	 * @return List of at most k words in tree that start with the prefix, highest weight first.
+	 *         If there is no word in the tree that has this prefix, or k is 0 or less, null is
+	 *         returned, as with completionList(prefix, limit).
+	 */
+	public ArrayList<String> topK(String prefix, int k) {
+		
+		// Clean up input -> convert to lower case and trim spaces
+		prefix = prefix.toLowerCase().trim();
+		
+		// Walks the trie, again if the words are renumbered meanwhile (see removeWord)
+		while(true){
+			int renumbered = startRead();
+			try {
+				ArrayList<String> topList = topKWalk(prefix, k);
+				if(readValid(renumbered)){
+					return topList;
+				}
+			} catch(RuntimeException e) {
+				if(readValid(renumbered)){
+					throw e;
+				}
+			}
+		}
+		
+	} //end of topK method
+	
+	/**
+	 * Best first walk for topK.
+	 * 
+	 * @param prefix (converted to lower case and trimmed), k
+	 * @return at most k words that start with the prefix, highest weight first, or null if there are none
+	 */
+	private ArrayList<String> topKWalk(String prefix, int k) {
+		
+		// Gets the root node with the common prefix
+		if(root.firstChild == null || k <= 0){
+			return null;
+		}
+		TrieNode cpNode = this.getCommonRNode(root, prefix);
+		if(cpNode == null){
+			return null;
+		}
+		
+		// Initializing Variables
+		ArrayList<String> topList = new ArrayList<String>();
+		PriorityQueue<TrieNode> queue = new PriorityQueue<TrieNode>(16, MAX_WEIGHT_FIRST);
+		queue.add(cpNode);
+		
+		// Best first -> leaves come out in order of weight
+		while(!queue.isEmpty() && topList.size() < k){
+			TrieNode ptr = queue.poll();
+			if(ptr.firstChild == null){
+				topList.add(words.get(ptr.substr.wordIndex));
+			} else {
+				for(TrieNode child = ptr.firstChild; child != null; child = child.sibling){
+					queue.add(child);
+				}
+				
+				// Terminal internal node -> its own word goes in as a leaf, by its own weight
+				if(ptr.terminal){
+					TrieNode wordLeaf = new TrieNode(ptr.substr, null, null);
+					wordLeaf.maxWeight = ptr.weight;
+					queue.add(wordLeaf);
+				}
+			}
+		}
+		
+		return topList;
+		
+	} //end of topKWalk method
+	
+	/**
+	 * Given a possibly misspelled prefix, returns the words in the trie that start with a
+	 * prefix within maxEdits edits (insertions, deletions or substitutions of a character)
+	 * of it. For instance, with the words bear, bull, stock, and bell, the fuzzy completions
+	 * of "bwa" with 1 edit are bear (prefix "bea"); with 2 edits, bear, bull and bell.
+	 * 
+	 * The trie is walked with a row of the edit distance table per character on the way
+	 * down (the distances between each prefix of the given prefix and the characters so
+	 * far), so each node costs one row per character of its substring, shared by all the
+	 * words below it. A node whose row has no distance within maxEdits cannot lead to a
+	 * match, and its subtree is skipped; a node where the whole prefix is within maxEdits
+	 * matches all the words below it, which are added without computing any more rows.
+	 * 
+	 * @param prefix Prefix to be completed with words in trie
+	 * @param maxEdits Maximum edit distance from the prefix, 0 or more
+	 * @return List of all words in tree that start with a prefix within maxEdits of the given one,
+	 *         in the same order as completionList. If there are none, null is returned.
+	 * @throws IllegalArgumentException If maxEdits is negative
+	 */
+	public ArrayList<String> fuzzyCompletions(String prefix, int maxEdits) {
+		
+		if(maxEdits < 0){
+			throw new IllegalArgumentException("Negative edit distance: " + maxEdits);
+		}
+		
+		// Clean up input -> convert to lower case and trim spaces
+		prefix = prefix.toLowerCase().trim();
+		if(prefix.length() == 0){
+			return null; //same as completionList
+		}
+		
+		// Walks the trie, again if the words are renumbered meanwhile (see removeWord)
+		while(true){
+			int renumbered = startRead();
+			try {
+				ArrayList<String> compList = fuzzyWalk(prefix, maxEdits);
+				if(readValid(renumbered)){
+					return compList;
+				}
+			} catch(RuntimeException e) {
+				if(readValid(renumbered)){
+					throw e;
+				}
+			}
+		}
+		
+	} //end of fuzzyCompletions method
+	
+	/**
+	 * Edit distance walk for fuzzyCompletions. The stack holds nodes still to visit, with
+	 * FUZZY for nodes whose rows are still to be computed, or MATCHED for nodes below a
+	 * match, whose words are all added.
+	 * 
+	 * @param prefix (converted to lower case and trimmed), maxEdits
+	 * @return words that start with a prefix within maxEdits of prefix, or null if there are none
+	 */
+	private ArrayList<String> fuzzyWalk(String prefix, int maxEdits) {
+		
+		// Initializing Variables
+		final int FUZZY = 0, MATCHED = 1;
+		int prefLength = prefix.length();
+		ArrayList<String> compList = null;
+		
+		// rows[i] -> distances between each prefix of prefix and the first i characters of the path
+		int[][] rows = new int[16][];
+		rows[0] = new int[prefLength + 1];
+		for(int j = 0; j <= prefLength; j++){
+			rows[0][j] = j; //j deletions
+		}
+		
+		NodeStack stack = new NodeStack();
+		if(root.firstChild != null){
+			stack.push(root.firstChild, prefLength <= maxEdits ? MATCHED : FUZZY);
+		}
+		
+		while(!stack.isEmpty()){
+			
+			int mode = stack.topValue();
+			TrieNode ptr = stack.pop();
 			
-			//Finding words with common prefixes
-			optic = getNodeSubstring(cpNode); //turns indexes of cpNode into a string (the root node containing the common prefix)
-			this.addToCL(cpNode, cpNode, compList);
+			// Siblings have the same parent -> same mode, same rows to start from
+			if(ptr.sibling != null){
+				stack.push(ptr.sibling, mode);
+			}
+			
+			// Computing a row per character of the node, until a match or nothing within reach
+			if(mode == FUZZY){
+				int end = ptr.substr.endIndex;
+				if(rows.length < end + 2){
+					int[][] newRows = new int[Math.max(rows.length * 2, end + 2)][];
+					System.arraycopy(rows, 0, newRows, 0, rows.length);
+					rows = newRows;
+				}
+				boolean reachable = true;
+				for(int pos = ptr.substr.startIndex; pos <= end && reachable && mode == FUZZY; pos++){
+					int[] prev = rows[pos];
+					int[] row = rows[pos+1];
+					if(row == null){
+						row = new int[prefLength + 1];
+						rows[pos+1] = row;
+					}
+					char c = nodeChar(ptr, pos);
+					row[0] = prev[0] + 1;
+					int min = row[0];
+					for(int j = 1; j <= prefLength; j++){
+						int cost = prev[j-1] + (prefix.charAt(j-1) == c ? 0 : 1); //match or substitution
+						cost = Math.min(cost, prev[j] + 1); //insertion
+						cost = Math.min(cost, row[j-1] + 1); //deletion
+						row[j] = cost;
+						min = Math.min(min, cost);
+					}
+					if(row[prefLength] <= maxEdits){
+						mode = MATCHED; //whole prefix within reach -> every word below
+					} else if(min > maxEdits){
+						reachable = false; //distances only go up from here
+					}
+				}
+				if(!reachable){
+					continue;
+				}
+			}
 			
-			return compList; //ArrayList filled with words that share the prefix
+			// Terminal -> its word, if matched
+			if(ptr.terminal && mode == MATCHED){
+				if(compList == null){
+					compList = new ArrayList<String>();
+				}
+				compList.add(words.get(ptr.substr.wordIndex));
+			}
+			if(ptr.firstChild != null){
+				stack.push(ptr.firstChild, mode);
+			}
+		}
+		
+		return compList;
+		
+	} //end of fuzzyWalk method
+	
+	/**
+	 * Returns the words in the trie that match a wildcard pattern, in which ? stands for
+	 * any one character, * for any number of characters (including none), and [abc],
+	 * [a-z] or [^abc] for one character listed or not listed; \ makes the next character
+	 * literal. For instance, with the words cat, cot, coat, bell and cell, "c?t" matches
+	 * cat and cot, "c*t" matches cat, coat and cot, and "[bc]ell" matches bell and cell.
+	 * 
+	 * The pattern is compiled into a small NFA, run as a DFA built as it goes (see
+	 * WordPattern), whose state is carried down the trie a character at a time, and kept
+	 * per character on the way down, as in fuzzyCompletions: the words below a node share
+	 * the work on its substring. A node's subtree is skipped at the first character of its
+	 * substring that leaves no NFA state, and a pattern that starts with literal characters goes straight down to the
+	 * node for them, without looking at any other subtree.
+	 * 
+	 * @param pattern Pattern to match whole words against (converted to lower case and trimmed)
+	 * @return List of all words in tree that match the pattern, in the same order as
+	 *         completionList. If there are none, null is returned.
+	 * @throws IllegalArgumentException If the pattern has a [ with no ], ends with \, or
+	 *         has more than WordPattern.MAX_ELEMENTS elements
+	 */
+	public ArrayList<String> match(String pattern) {
+		
+		// Clean up input -> convert to lower case and trim spaces
+		pattern = pattern.toLowerCase().trim();
+		if(pattern.length() == 0){
+			return null; //same as completionList
+		}
+		WordPattern compiled = new WordPattern(pattern);
+		
+		// Walks the trie, again if the words are renumbered meanwhile (see removeWord)
+		while(true){
+			int renumbered = startRead();
+			try {
+				ArrayList<String> matches = matchWalk(compiled);
+				if(readValid(renumbered)){
+					return matches;
+				}
+			} catch(RuntimeException e) {
+				if(readValid(renumbered)){
+					throw e;
+				}
+			}
+		}
+		
+	} //end of match method
+	
+	/**
+	 * NFA walk for match. The stack holds nodes still to visit, with WITH_SIBLINGS for the
+	 * first of a node's children still to visit, or ALONE for the node a literal prefix
+	 * leads to.
+	 * 
+	 * @param pattern compiled pattern
+	 * @return words that match the pattern, or null if there are none
+	 */
+	private ArrayList<String> matchWalk(WordPattern pattern) {
+		
+		// Initializing Variables
+		final int ALONE = 0, WITH_SIBLINGS = 1;
+		ArrayList<String> matches = null;
+		NodeStack stack = new NodeStack();
 		
-		// Case 3 -> Prefix not found (return null)
+		// states[i] -> DFA state after the first i characters of the path
+		int[] states = new int[16];
+		
+		// Literal prefix -> only the subtree of the node it ends in
+		String literal = pattern.literalPrefix();
+		if(root.firstChild == null){
+			return null;
+		} else if(literal.length() > 0){
+			TrieNode cpNode = getCommonRNode(root, literal);
+			if(cpNode == null){
+				return null;
+			}
+			int start = cpNode.substr.startIndex; //characters before it are all in the literal prefix
+			if(states.length < start + 1){
+				states = new int[start + 16];
+			}
+			states[start] = pattern.afterLiteral(start);
+			stack.push(cpNode, ALONE);
 		} else {
+			states[0] = pattern.afterLiteral(0);
+			stack.push(root.firstChild, WITH_SIBLINGS);
+		}
+		
+		while(!stack.isEmpty()){
+			
+			int mode = stack.topValue();
+			TrieNode ptr = stack.pop();
 			
+			// Siblings have the same parent -> same states to start from
+			if(mode == WITH_SIBLINGS && ptr.sibling != null){
+				stack.push(ptr.sibling, WITH_SIBLINGS);
+			}
+			
+			// Stepping the states on each character of the node, until none are left
+			int end = ptr.substr.endIndex;
+			if(states.length < end + 2){
+				int[] newStates = new int[Math.max(states.length * 2, end + 2)];
+				System.arraycopy(states, 0, newStates, 0, states.length);
+				states = newStates;
+			}
+			int current = states[ptr.substr.startIndex];
+			for(int pos = ptr.substr.startIndex; pos <= end && current != WordPattern.DEAD; pos++){
+				current = pattern.next(current, nodeChar(ptr, pos));
+				states[pos+1] = current;
+			}
+			if(current == WordPattern.DEAD){
+				continue; //no word below can match
+			}
+			
+			// Terminal -> its word, if the whole pattern is matched
+			if(ptr.terminal && pattern.accepts(current)){
+				if(matches == null){
+					matches = new ArrayList<String>();
+				}
+				matches.add(words.get(ptr.substr.wordIndex));
+			}
+			if(ptr.firstChild != null){
+				stack.push(ptr.firstChild, WITH_SIBLINGS);
+			}
+		}
+		
+		return matches;
+		
+	} //end of matchWalk method
+	
+	/**
+	 * Given a string prefix, returns an iterator over its completion list. Nothing is
+	 * collected up front: each call to next walks the trie only as far as the next word,
+	 * so the first word costs the length of the prefix plus the depth of the trie, however
+	 * many words start with the prefix. The trie must not be changed while iterating.
+	 * 
+	 * @param prefix Prefix to be completed with words in trie
+	 * @return Iterator over all words in tree that start with the prefix, in the same order
+	 *         as completionList (no words if there is no word in the tree that has this prefix)
+	 */
+	public Iterator<String> completions(String prefix) {
+		
+		// Clean up input -> convert to lower case and trim spaces
+		prefix = prefix.toLowerCase().trim();
+		
+		// Gets the root node with the common prefix (none if trie is empty)
+		TrieNode cpNode = null;
+		if(root.firstChild != null){
+			cpNode = this.getCommonRNode(root, prefix);
+		}
+		
+		// Only the common prefix node's subtree, not its siblings
+		NodeStack stack = new NodeStack();
+		if(cpNode != null){
+			stack.push(cpNode, CompletionIterator.ALONE);
+		}
+		
+		return new CompletionIterator(stack, null);
+		
+	} //end of completions method
+	
+	/**
+	 * Returns an iterator over the words in the trie from one word up to (not including)
+	 * another, in sorted order. Siblings are kept in order of first character, so the walk
+	 * goes straight down to the first word at or after from, and then on in the same order
+	 * as completionList: iterating over all the words is one walk over the trie, with no
+	 * sorting. The trie must not be changed while iterating.
+	 * 
+	 * @param from Smallest word to return (converted to lower case and trimmed); null to start at the first word
+	 * @param to Word to stop before (converted to lower case and trimmed); null to go on to the last word
+	 * @return Iterator over the words w in the trie with from <= w < to, in sorted order
+	 */
+	public Iterator<String> range(String from, String to) {
+		
+		// Clean up input -> convert to lower case and trim spaces
+		if(from != null){
+			from = from.toLowerCase().trim();
+		}
+		if(to != null){
+			to = to.toLowerCase().trim();
+		}
+		
+		return new CompletionIterator(seek(from), to);
+		
+	} //end of range method
+	
+	/**
+	 * Returns the n words that come after a word in sorted order (the word itself need not
+	 * be in the trie), for paging through the whole dictionary: the last word of one page
+	 * gives the next page.
+	 * 
+	 * @param word Word to start after (converted to lower case and trimmed); null to start at the first word
+	 * @param n Maximum number of words to return
+	 * @return List of at most n words greater than word, in sorted order. If there are none, or n
+	 *         is 0 or less, null is returned.
+	 */
+	public ArrayList<String> wordsAfter(String word, int n) {
+		
+		// No room for any word
+		if(n <= 0){
 			return null;
+		}
+		
+		// Clean up input -> convert to lower case and trim spaces
+		if(word != null){
+			word = word.toLowerCase().trim();
+		}
+		
+		// Walks the trie, again if the words are renumbered meanwhile (see removeWord)
+		while(true){
+			int renumbered = startRead();
+			try {
+				
+				// Initializing Variables
+				Iterator<String> after = new CompletionIterator(seek(word), null);
+				ArrayList<String> page = null;
+				
+				// Pulling words until n are found, skipping the word itself
+				while(after.hasNext() && (page == null || page.size() < n)){
+					String next = after.next();
+					if(next.equals(word)){
+						continue;
+					}
+					if(page == null){
+						page = new ArrayList<String>();
+					}
+					page.add(next);
+				}
+				
+				if(readValid(renumbered)){
+					return page;
+				}
+				
+			} catch(RuntimeException e) {
+				if(readValid(renumbered)){
+					throw e;
+				}
+			}
+		}
+		
+	} //end of wordsAfter method
+	
+	/**
+	 * Builds the stack of nodes that a walk over the whole trie in sorted order would still
+	 * have to visit when it reaches the first word at or after from. Goes down the path of
+	 * from; at each node, the siblings after the child taken hold larger words, so the
+	 * first of them is pushed (along with its siblings); and where the path of from leaves
+	 * the trie, the subtree just after it is pushed.
+	 * 
+	 * @param from (converted to lower case and trimmed), null for the whole trie
+	 * @return stack for CompletionIterator
+	 */
+	private NodeStack seek(String from) {
+		
+		// Initializing Variables
+		NodeStack stack = new NodeStack();
+		int fromLength = (from == null) ? 0 : from.length();
+		TrieNode node = root;
+		
+		while(node.firstChild != null){
+			
+			int pos = (node == root) ? 0 : node.substr.endIndex + 1; //index of from's next character
+			
+			// from ends above node's children -> every word below is at or after it
+			if(pos >= fromLength){
+				stack.push(node.firstChild, CompletionIterator.WITH_SIBLINGS);
+				return stack;
+			}
+			
+			// First child whose character is not below from's next character
+			char c = from.charAt(pos);
+			TrieNode child = node.firstChild;
+			while(child != null && nodeChar(child, pos) < c){
+				child = child.sibling;
+			}
+			if(child == null){
+				return stack; //every child is before from
+			}
+			if(nodeChar(child, pos) > c){
+				stack.push(child, CompletionIterator.WITH_SIBLINGS); //child and the ones after it are all after from
+				return stack;
+			}
+			
+			// Same character -> siblings after child come later; comparing the rest of child's substring
+			if(child.sibling != null){
+				stack.push(child.sibling, CompletionIterator.WITH_SIBLINGS);
+			}
+			int end = child.substr.endIndex;
+			int index = nodeMismatch(child, pos + 1, Math.min(end + 1, fromLength), from);
+			if(index <= end){
+				
+				// from ends inside child's substring, or child's character is larger -> all of child's words are after from
+				if(index == fromLength || nodeChar(child, index) > from.charAt(index)){
+					stack.push(child, CompletionIterator.ALONE);
+				}
+				return stack; //otherwise all of child's words are before from
+			}
 			
+			// Whole substring matched -> on to child's children (child's own word, if any, is a prefix of from -> before it)
+			if(index == fromLength){
+				stack.push(child, CompletionIterator.ALONE); //from ends at child -> child's words are at or after it
+				return stack;
+			}
+			node = child;
 		}
-
-	} //end of completionList method
+		
+		return stack; //node is a leaf whose word is a prefix of from -> before it
+		
+	} //end of seek method
+	
+	/**
+	 * Iterator over the words under the nodes of a stack, in the order addToCL adds them,
+	 * up to an optional end word. Keeps its own stack of nodes still to visit, since it is
+	 * walked a step at a time; each node on it is marked as ALONE (only its own subtree)
+	 * or WITH_SIBLINGS (its subtree and those of the siblings after it).
+	 */
+	private class CompletionIterator implements Iterator<String> {
+		
+		static final int ALONE = 0, WITH_SIBLINGS = 1;
+		
+		/**
+		 * Nodes still to visit.
+		 */
+		private NodeStack stack;
+		
+		/**
+		 * Word to stop before, null for none.
+		 */
+		private String to;
+		
+		/**
+		 * Next word to return, null if not found yet or no more words.
+		 */
+		private String nextWord;
+		
+		CompletionIterator(NodeStack stack, String to) {
+			this.stack = stack;
+			this.to = to;
+		}
+		
+		public boolean hasNext() {
+			
+			// Walks until the next terminal node (its word comes before the words below it)
+			while(nextWord == null && !stack.isEmpty()){
+				int mode = stack.topValue();
+				TrieNode ptr = stack.pop();
+				if(mode == WITH_SIBLINGS && ptr.sibling != null){
+					stack.push(ptr.sibling, WITH_SIBLINGS);
+				}
+				if(ptr.firstChild != null){
+					stack.push(ptr.firstChild, WITH_SIBLINGS);
+				}
+				if(ptr.terminal){
+					nextWord = words.get(ptr.substr.wordIndex);
+					if(to != null && nextWord.compareTo(to) >= 0){
+						nextWord = null; //past the end -> no more words
+						stack.clear();
+					}
+				}
+			}
+			
+			return nextWord != null;
+		}
+		
+		public String next() {
+			if(!hasNext()){
+				throw new NoSuchElementException();
+			}
+			String word = nextWord;
+			nextWord = null;
+			return word;
+		}
+		
+	} //end of CompletionIterator class
 	
 	
 	public void print() {
 		print(root, 1, words);
 	}
 	
-	private static void print(TrieNode root, int indent, ArrayList<String> words) {
+	private static void print(TrieNode root, int indent, WordRegistry words) {
 		if (root == null) {
 			return;
 		}
-		for (int i=0; i < indent-1; i++) {
-			System.out.print("    ");
-		}
-		
-		if (root.substr != null) {
-			System.out.println("      " + words.get(root.substr.wordIndex));
-		}
-		
-		for (int i=0; i < indent-1; i++) {
-			System.out.print("    ");
-		}
-		System.out.print(" ---");
-		System.out.println("(" + root.substr + ")");
 		
-		for (TrieNode ptr=root.firstChild; ptr != null; ptr=ptr.sibling) {
-			for (int i=0; i < indent-1; i++) {
+		// Same output as printing each node, then each child one level further in;
+		// the stack holds nodes still to print with their indent
+		NodeStack stack = new NodeStack();
+		stack.push(root, indent);
+		while (!stack.isEmpty()) {
+			int level = stack.topValue();
+			TrieNode node = stack.pop();
+			if (node != root && node.sibling != null) {
+				stack.push(node.sibling, level);
+			}
+			if (node.firstChild != null) {
+				stack.push(node.firstChild, level+1);
+			}
+			
+			if (node != root) {
+				for (int i=0; i < level-2; i++) {
+					System.out.print("    ");
+				}
+				System.out.println("     |");
+			}
+			
+			for (int i=0; i < level-1; i++) {
+				System.out.print("    ");
+			}
+			
+			if (node.substr != null) {
+				System.out.println("      " + words.get(node.substr.wordIndex));
+			}
+			
+			for (int i=0; i < level-1; i++) {
 				System.out.print("    ");
 			}
-			System.out.println("     |");
-			print(ptr, indent+1, words);
+			System.out.print(" ---");
+			System.out.println("(" + node.substr + ")");
 		}
 	}
  }
@@ -0,0 +1,277 @@
+package structures;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class counts what a Trie does on its hot paths, for finding out why completions
+ * are slow: how many nodes and characters a lookup goes through, how long the sibling
+ * lists it walks are, how deep prefixes are found, and how many words come back. It also
+ * has the JFR events that insertWord and completionList emit, which a flight recording
+ * shows with their durations.
+ *
+ * Instrumentation is off unless the JVM is started with -Dstructures.trie.metrics=true.
+ * ENABLED is a static final read once, when this class is loaded, and every counting
+ * site in Trie is an "if (TrieMetrics.ENABLED)" block, so with it off the JIT drops
+ * those blocks altogether and the trie runs as if they were not there.
+ *
+ * Counters are LongAdders, so that readers counting in many threads at once do not
+ * contend on a shared field.
+ *
+ */
+public class TrieMetrics {
+
+	/**
+	 * True if instrumentation is on (system property structures.trie.metrics).
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("structures.trie.metrics");
+
+	private final LongAdder inserts = new LongAdder();
+	private final LongAdder completions = new LongAdder();
+	private final LongAdder nodesVisited = new LongAdder();
+	private final LongAdder charComparisons = new LongAdder();
+
+	/**
+	 * Levels gone down to the node a prefix is found at (completionList, countWithPrefix
+	 * and the other prefix lookups).
+	 */
+	private final Histogram depths = new Histogram();
+
+	/**
+	 * Children passed over per child lookup in a node's sibling list (nodes with a child
+	 * index count 0).
+	 */
+	private final Histogram siblingsWalked = new Histogram();
+
+	/**
+	 * Number of words returned by completionList.
+	 */
+	private final Histogram resultSizes = new Histogram();
+
+	TrieMetrics() {
+	}
+
+	void insert() {
+		inserts.increment();
+	}
+
+	void completion(int results) {
+		completions.increment();
+		resultSizes.record(results);
+	}
+
+	void visited(int nodes) {
+		nodesVisited.add(nodes);
+	}
+
+	void compared() {
+		charComparisons.increment();
+	}
+
+	void compared(int characters) {
+		charComparisons.add(characters);
+	}
+
+	void lookup(int siblings) {
+		nodesVisited.add(siblings + 1);
+		siblingsWalked.record(siblings);
+	}
+
+	void found(int depth) {
+		depths.record(depth);
+	}
+
+	/**
+	 * Returns the number of calls to insertWord, including those for words already in the trie.
+	 *
+	 * @return Number of inserts
+	 */
+	public long inserts() {
+		return inserts.sum();
+	}
+
+	/**
+	 * Returns the number of calls to completionList (without a limit or page).
+	 *
+	 * @return Number of completion lists
+	 */
+	public long completions() {
+		return completions.sum();
+	}
+
+	/**
+	 * Returns the number of nodes looked at: children checked while looking for the one
+	 * to go down to, and nodes walked to collect completion lists.
+	 *
+	 * @return Number of nodes visited
+	 */
+	public long nodesVisited() {
+		return nodesVisited.sum();
+	}
+
+	/**
+	 * Returns the number of characters read from the words to compare them with the
+	 * characters looked for.
+	 *
+	 * @return Number of character comparisons
+	 */
+	public long charComparisons() {
+		return charComparisons.sum();
+	}
+
+	public Histogram depths() {
+		return depths;
+	}
+
+	public Histogram siblingsWalked() {
+		return siblingsWalked;
+	}
+
+	public Histogram resultSizes() {
+		return resultSizes;
+	}
+
+	/**
+	 * Sets all counters and histograms back to zero. Counts made while this runs may
+	 * or may not be kept.
+	 */
+	public void reset() {
+		inserts.reset();
+		completions.reset();
+		nodesVisited.reset();
+		charComparisons.reset();
+		depths.reset();
+		siblingsWalked.reset();
+		resultSizes.reset();
+	}
+
+	/**
+	 * Returns the counters and histograms, one per line.
+	 */
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		report.append("inserts: ").append(inserts()).append('\n');
+		report.append("completions: ").append(completions()).append('\n');
+		report.append("nodes visited: ").append(nodesVisited()).append('\n');
+		report.append("character comparisons: ").append(charComparisons()).append('\n');
+		report.append("prefix depths: ").append(depths).append('\n');
+		report.append("siblings walked per lookup: ").append(siblingsWalked).append('\n');
+		report.append("completion list sizes: ").append(resultSizes).append('\n');
+		return report.toString();
+	}
+
+	/**
+	 * Counts of values in buckets of powers of 2: bucket 0 holds 0, and bucket b
+	 * (1 to 32) holds the values from 2^(b-1) up to 2^b - 1. Values can be recorded by
+	 * many threads at once.
+	 */
+	public static class Histogram {
+
+		public static final int BUCKETS = 33;
+
+		private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+		public Histogram() {
+			for (int b=0; b < BUCKETS; b++) {
+				buckets[b] = new LongAdder();
+			}
+		}
+
+		/**
+		 * Counts a value (0 or more).
+		 */
+		public void record(int value) {
+			buckets[32 - Integer.numberOfLeadingZeros(value)].increment();
+		}
+
+		/**
+		 * Returns the number of values recorded in a bucket.
+		 */
+		public long count(int bucket) {
+			return buckets[bucket].sum();
+		}
+
+		/**
+		 * Returns the smallest value of a bucket.
+		 */
+		public static long low(int bucket) {
+			return bucket == 0 ? 0 : 1L << (bucket - 1);
+		}
+
+		/**
+		 * Returns the largest value of a bucket.
+		 */
+		public static long high(int bucket) {
+			return bucket == 0 ? 0 : (1L << bucket) - 1;
+		}
+
+		void reset() {
+			for (LongAdder bucket : buckets) {
+				bucket.reset();
+			}
+		}
+
+		/**
+		 * Returns the buckets that have values, as "low-high: count" (or "value: count").
+		 */
+		public String toString() {
+			StringBuilder text = new StringBuilder();
+			for (int b=0; b < BUCKETS; b++) {
+				long count = count(b);
+				if (count == 0) {
+					continue;
+				}
+				if (text.length() > 0) {
+					text.append(", ");
+				}
+				text.append(low(b));
+				if (high(b) != low(b)) {
+					text.append('-').append(high(b));
+				}
+				text.append(": ").append(count);
+			}
+			return text.length() == 0 ? "none" : text.toString();
+		}
+	}
+
+	/**
+	 * JFR event for an insertWord call.
+	 */
+	@Name("structures.TrieInsert")
+	@Label("Trie Insert")
+	@Category("Trie")
+	static class InsertEvent extends Event {
+
+		@Label("Word")
+		String word;
+
+		@Label("Weight")
+		int weight;
+
+		@Label("Added")
+		boolean added;
+	}
+
+	/**
+	 * JFR event for a completionList call.
+	 */
+	@Name("structures.TrieCompletion")
+	@Label("Trie Completion")
+	@Category("Trie")
+	static class CompletionEvent extends Event {
+
+		@Label("Prefix")
+		String prefix;
+
+		@Label("Results")
+		int results;
+
+		@Label("Cached")
+		boolean cached;
+	}
+
+}
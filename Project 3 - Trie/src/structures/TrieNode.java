@@ -1,102 +1,66 @@
 package structures;
 
 /**
- * This class encapsulates the set of 3 indexes that point to a substring 
- * stored in an array of strings. The array of strings is the collection of
- * words that are indexed by the trie. Each node of the trie will have an
- * instance of Indexes.
- * 
- * Example: consider the words "have", "hit", "see", "data" stored in an
- * array in that order. Then, the substring "ave" in "have" will be indexed
- * by the triplet (0,1,3) ["have" is at position 0 in the array, 1 is the index
- * of character 'a' in "have" and 3 is the index of character 'e' in "have"]. 
- * Similarly, substring "ee" in the word "see" will be indexed by the triplet
- * (2,1,2). 
- * 
- * Substrings may be single characters, as in the first "a" in "data", 
- * which will be indexed by the triplet (3,1,1), or the second "a" in "data", 
- * which will be indexes by the triplet (3,3,3)
- * 
+ * This class encapsulates a compressed trie node with fields for the following:
+ * - an Indexes instance, pointing to the substring that is held at that node
+ * - the first child node
+ * - the sibling node
+ * - an index of the children by first character, for nodes with many children
+ * - whether a word ends at this node
+ * - the weight of the word ending at this node, and the largest weight under it
+ * - the number of words under it
  * 
  * @author Sesh Venugopal
  *
  */
-class Indexes {
-	
+public class TrieNode {
+
 	/**
-	 * Index into the word collection array.
+	 * Substring held at this node (could be a single character)
+	 * 
+	 * The substring and links are volatile so that threads reading the trie while
+	 * another thread inserts see nodes only once they are fully built.
 	 */
-	int wordIndex;
+	volatile Indexes substr;
 	
 	/**
-	 * Start index of substring in word.
+	 * First child of this node
 	 */
-	short startIndex;
+	volatile TrieNode firstChild;
 	
 	/**
-	 * End index of substring in word.
+	 * Sibling of this node
 	 */
-	short endIndex;
+	volatile TrieNode sibling;
 	
 	/**
-	 * Initializes this instance with all indexes.
-	 * 
-	 * @param wordIndex Index of word in array of words
-	 * @param startIndex Starting index of substring
-	 * @param endIndex Ending index of substring
+	 * Children of this node by first character, null until the node has
+	 * ChildIndex.MIN_CHILDREN children (the firstChild/sibling list is kept either way)
 	 */
-	public Indexes(int wordIndex, short startIndex, short endIndex) {
-		this.wordIndex = wordIndex;
-		this.startIndex = startIndex;
-		this.endIndex = endIndex;
-	}
+	volatile ChildIndex children;
 	
-	/* (non-Javadoc)
-	 * @see java.lang.Object#toString()
+	/**
+	 * True if a word ends at the end of this node's substring: always for leaves, and for
+	 * internal nodes whose word is a prefix of the words below them. The substring of such
+	 * a node is taken from that word, so its word is the one with length endIndex + 1.
+	 * Set after substr, so a reader that sees it set also sees the word's indexes.
 	 */
-	public String toString() {
-		return "(" + wordIndex + "," + startIndex + "," + endIndex + ")";
-	}
+	volatile boolean terminal;
 	
-	/* (non-Javadoc)
-	 * @see java.lang.Object#equals(java.lang.Object)
-	 */
-	public boolean equals(Object o) {
-		if (o == null || !(o instanceof Indexes)) {
-			return false;
-		}
-		Indexes oi = (Indexes)o;
-		return wordIndex == oi.wordIndex &&
-				startIndex == oi.startIndex &&
-				endIndex == oi.endIndex;
-	}
-}
-
-/**
- * This class encapsulates a compressed trie node with fields for the following:
- * - an Indexes instance, pointing to the substring that is held at that node
- * - the first child node
- * - the sibling node
- * 
- * @author Sesh Venugopal
- *
- */
-public class TrieNode {
-
 	/**
-	 * Substring held at this node (could be a single character)
+	 * Weight of the word ending at this node (terminal nodes only)
 	 */
-	Indexes substr;
+	int weight;
 	
 	/**
-	 * First child of this node
+	 * Largest weight of any word in this node's subtree
 	 */
-	TrieNode firstChild;
+	int maxWeight;
 	
 	/**
-	 * Sibling of this node
+	 * Number of words in this node's subtree
 	 */
-	TrieNode sibling;
+	int count;
 	
 	/**
 	 * Initializes this trie node with substring, first child, and sibling
@@ -0,0 +1,351 @@
+package structures;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * This class is a read-only trie stored in a binary snapshot file, and used straight
+ * from the file through memory mapping: opening a snapshot only maps the file, and
+ * completionList reads nodes and characters from the mapped file, without building
+ * any TrieNode objects. Every JVM on a host that opens the same snapshot shares the
+ * operating system's cached pages of the file.
+ *
+ * File layout (all numbers big-endian):
+ * - header: magic, version, node count, word count (4 ints), total characters (long)
+ * - node table: per node, wordIndex (int), start (short), end (short), firstChild (int),
+ *   sibling (int), -1 for no node; node 0 is the root. This is the layout of PackedTrie.
+ * - word offsets: per word, and one past the last word, the index of its first
+ *   character in the characters section (long)
+ * - characters: all the words' characters, one after the other (2-byte chars)
+ *
+ * Each section is mapped in regions of 1 GB, so the file is not limited to the 2 GB
+ * a single mapping can cover.
+ *
+ * A word ends at a node if the node's word is no longer than the node's substring: the
+ * substring of a terminal TrieNode is taken from its own word, and that of any other
+ * node from a longer word below it. So leaves and internal terminal nodes are told
+ * apart without a flag in the node table.
+ *
+ */
+public class TrieSnapshot {
+
+	/**
+	 * First int of every snapshot file ("TRIE"), and format version.
+	 */
+	private static final int MAGIC = 0x54524945, VERSION = 1;
+
+	/**
+	 * Size of the header, and of a node in the node table, in bytes.
+	 */
+	private static final int HEADER_BYTES = 24, NODE_BYTES = 16;
+
+	/**
+	 * Handle used for "no node".
+	 */
+	private static final int NONE = -1;
+
+	/**
+	 * Number of nodes (including the root) and of words.
+	 */
+	private int nodeCount, wordCount;
+
+	/**
+	 * Mapped sections of the file.
+	 */
+	private Section nodes, offsets, chars;
+
+	/**
+	 * Writes a snapshot of a trie to a file. The trie cannot be changed while it is
+	 * being written. Only the words still in the trie are written, with new ids with no
+	 * gaps, as renumbering would give them: the ids of removed words are left out (no
+	 * node refers to them).
+	 *
+	 * @param trie Trie to write
+	 * @param file Snapshot file to create (replaced if it exists)
+	 * @throws IOException If the file cannot be written
+	 */
+	public static void write(Trie trie, File file)
+	throws IOException {
+		synchronized (trie) {
+
+			// Nodes in breadth first order, so each node's children are next to each other
+			ArrayList<TrieNode> order = new ArrayList<TrieNode>();
+			ArrayList<Integer> firstChildren = new ArrayList<Integer>();
+			order.add(trie.root);
+			for (int i=0; i < order.size(); i++) {
+				TrieNode node = order.get(i);
+				firstChildren.add(node.firstChild == null ? NONE : order.size());
+				for (TrieNode ptr=node.firstChild; ptr != null; ptr=ptr.sibling) {
+					order.add(ptr);
+				}
+			}
+
+			// Words still in the trie, and the id each is written with
+			WordRegistry words = trie.words;
+			int[] newIds = new int[words.size()];
+			ArrayList<String> live = new ArrayList<String>(words.size() - words.removed());
+			long totalChars = 0;
+			for (int w=0; w < newIds.length; w++) {
+				String word = words.get(w);
+				if (words.indexOf(word) == w) {
+					newIds[w] = live.size();
+					live.add(word);
+					totalChars += word.length();
+				} else {
+					newIds[w] = NONE;
+				}
+			}
+
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(order.size());
+				out.writeInt(live.size());
+				out.writeLong(totalChars);
+
+				for (int i=0; i < order.size(); i++) {
+					TrieNode node = order.get(i);
+					if (node.substr == null) {
+						out.writeInt(NONE);
+						out.writeShort(0);
+						out.writeShort(-1);
+					} else {
+						out.writeInt(newIds[node.substr.wordIndex]);
+						out.writeShort(node.substr.startIndex);
+						out.writeShort(node.substr.endIndex);
+					}
+					out.writeInt(firstChildren.get(i));
+					out.writeInt(node.sibling == null || i == 0 ? NONE : i + 1);
+				}
+
+				long offset = 0;
+				for (String word : live) {
+					out.writeLong(offset);
+					offset += word.length();
+				}
+				out.writeLong(offset);
+
+				for (String word : live) {
+					out.writeChars(word);
+				}
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * Opens a snapshot file. Only the header is read; the rest of the file is mapped,
+	 * and read in by the operating system as completionList touches it.
+	 *
+	 * @param file Snapshot file written by write
+	 * @return The snapshot
+	 * @throws IOException If the file cannot be read, or is not a snapshot
+	 */
+	public static TrieSnapshot open(File file)
+	throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+				throw new IOException("Not a trie snapshot: " + file);
+			}
+			TrieSnapshot snapshot = new TrieSnapshot();
+			snapshot.nodeCount = header.getInt(8);
+			snapshot.wordCount = header.getInt(12);
+			long totalChars = header.getLong(16);
+
+			long position = HEADER_BYTES;
+			long nodeBytes = (long)snapshot.nodeCount * NODE_BYTES;
+			long offsetBytes = ((long)snapshot.wordCount + 1) * 8;
+			snapshot.nodes = new Section(channel, position, nodeBytes);
+			position += nodeBytes;
+			snapshot.offsets = new Section(channel, position, offsetBytes);
+			position += offsetBytes;
+			snapshot.chars = new Section(channel, position, totalChars * 2);
+			return snapshot;
+		} finally {
+			channel.close(); //mappings stay valid after the channel is closed
+		}
+	}
+
+	/**
+	 * Returns the number of nodes in this snapshot, including the root.
+	 *
+	 * @return Number of nodes
+	 */
+	public int nodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Returns the number of words in this snapshot.
+	 *
+	 * @return Number of words
+	 */
+	public int wordCount() {
+		return wordCount;
+	}
+
+	/**
+	 * Given a string prefix, returns its "completion list", i.e. all the words in the trie
+	 * that start with this prefix. Same as Trie.completionList, but read from the mapped file.
+	 *
+	 * @param prefix Prefix to be completed with words in trie
+	 * @return List of all words in tree that start with the prefix, in the same order as
+	 *         Trie.completionList. If there is no word in the tree that has this prefix, null is returned.
+	 */
+	public ArrayList<String> completionList(String prefix) {
+		prefix = prefix.toLowerCase().trim();
+		int length = prefix.length();
+		if (length == 0) {
+			return null;
+		}
+
+		// Walk down to the node where the prefix ends
+		int node = firstChild(0);
+		int pos = 0;
+		while (node != NONE && pos < length) {
+			long wordStart = wordStart(wordIndex(node));
+			if (chars.getChar(2 * (wordStart + pos)) != prefix.charAt(pos)) {
+				node = sibling(node);
+				continue;
+			}
+			int e = end(node);
+			while (pos <= e && pos < length) {
+				if (chars.getChar(2 * (wordStart + pos)) != prefix.charAt(pos)) {
+					return null;
+				}
+				pos++;
+			}
+			if (pos < length) {
+				node = firstChild(node);
+			}
+		}
+		if (node == NONE) {
+			return null;
+		}
+
+		// Collect the words at and under that node
+		ArrayList<String> compList = new ArrayList<String>();
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = node;
+		while (top > 0) {
+			int ptr = stack[--top];
+			int sibling = sibling(ptr);
+			int firstChild = firstChild(ptr);
+			if (ptr != node && sibling != NONE) {
+				if (top == stack.length) {
+					int[] newStack = new int[stack.length * 2];
+					System.arraycopy(stack, 0, newStack, 0, top);
+					stack = newStack;
+				}
+				stack[top++] = sibling;
+			}
+			if (isWord(ptr)) {
+				compList.add(word(wordIndex(ptr)));
+			}
+			if (firstChild != NONE) {
+				if (top == stack.length) {
+					int[] newStack = new int[stack.length * 2];
+					System.arraycopy(stack, 0, newStack, 0, top);
+					stack = newStack;
+				}
+				stack[top++] = firstChild;
+			}
+		}
+		return compList;
+	}
+
+	private int wordIndex(int node) {
+		return nodes.getInt((long)node * NODE_BYTES);
+	}
+
+	private int end(int node) {
+		return nodes.getShort((long)node * NODE_BYTES + 6);
+	}
+
+	private int firstChild(int node) {
+		return nodes.getInt((long)node * NODE_BYTES + 8);
+	}
+
+	private int sibling(int node) {
+		return nodes.getInt((long)node * NODE_BYTES + 12);
+	}
+
+	private long wordStart(int word) {
+		return offsets.getLong((long)word * 8);
+	}
+
+	/**
+	 * Tells whether a word ends at a node: its word's length is one past the node's end.
+	 */
+	private boolean isWord(int node) {
+		int word = wordIndex(node);
+		return wordStart(word + 1) - wordStart(word) == end(node) + 1;
+	}
+
+	/**
+	 * Reads a whole word out of the characters section.
+	 */
+	private String word(int word) {
+		long start = wordStart(word);
+		int length = (int)(wordStart(word + 1) - start);
+		char[] letters = new char[length];
+		for (int i=0; i < length; i++) {
+			letters[i] = chars.getChar(2 * (start + i));
+		}
+		return new String(letters);
+	}
+
+	/**
+	 * A section of the snapshot file, mapped in regions of 1 GB. Values in the file are
+	 * aligned to their size and the regions are a power of 2 long, so no value crosses
+	 * from one region into the next.
+	 */
+	private static class Section {
+
+		private static final int REGION_BITS = 30;
+
+		private MappedByteBuffer[] regions;
+
+		Section(FileChannel channel, long position, long size)
+		throws IOException {
+			int count = (int)((size + (1L << REGION_BITS) - 1) >>> REGION_BITS);
+			regions = new MappedByteBuffer[count];
+			for (int r=0; r < count; r++) {
+				long start = (long)r << REGION_BITS;
+				long length = Math.min(1L << REGION_BITS, size - start);
+				regions[r] = channel.map(FileChannel.MapMode.READ_ONLY, position + start, length);
+			}
+		}
+
+		int getInt(long pos) {
+			return regions[(int)(pos >>> REGION_BITS)].getInt((int)(pos & ((1L << REGION_BITS) - 1)));
+		}
+
+		short getShort(long pos) {
+			return regions[(int)(pos >>> REGION_BITS)].getShort((int)(pos & ((1L << REGION_BITS) - 1)));
+		}
+
+		long getLong(long pos) {
+			return regions[(int)(pos >>> REGION_BITS)].getLong((int)(pos & ((1L << REGION_BITS) - 1)));
+		}
+
+		char getChar(long pos) {
+			return regions[(int)(pos >>> REGION_BITS)].getChar((int)(pos & ((1L << REGION_BITS) - 1)));
+		}
+	}
+
+}
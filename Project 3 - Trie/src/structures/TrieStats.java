@@ -0,0 +1,230 @@
+package structures;
+
+/**
+ * This class is a report on the shape of a trie, for seeing where its memory goes and
+ * how long its lookups walk: the number of nodes, leaves and words, how deep the nodes
+ * are, how many children the internal nodes have (the length of the sibling list a
+ * lookup may walk, or the size of its child index), and an estimate of the bytes the
+ * nodes take.
+ *
+ * Byte counts are estimates for a 64-bit JVM with compressed references (12-byte object
+ * headers, 4-byte references, sizes rounded up to multiples of 8): a TrieNode takes 48
+ * bytes, its Indexes 24, and a child index what ChildIndex.sizeInBytes says. The words
+ * themselves are counted apart from the nodes, as Strings of one byte per character if
+ * they are all below 256 (compact strings) and two otherwise, or, for a trie that keeps
+ * them off the heap, as the direct memory of its WordArena.
+ *
+ */
+public class TrieStats {
+
+	/**
+	 * Estimated bytes of a TrieNode, and of the Indexes of a node other than the root.
+	 */
+	static final int NODE_BYTES = 48, INDEXES_BYTES = 24;
+
+	private long nodes, leaves, words, indexedNodes;
+	private int maxDepth;
+	private long totalDepth;
+	private long nodeBytes, wordBytes, wordChars, offHeapBytes;
+
+	/**
+	 * Number of internal nodes with each number of children (index 0 unused).
+	 */
+	private long[] childCounts = new long[16];
+
+	/**
+	 * Walks a trie, which cannot be changed during the walk.
+	 *
+	 * @param trie Trie to report on
+	 */
+	TrieStats(Trie trie) {
+		synchronized (trie) {
+			NodeStack stack = new NodeStack();
+			stack.push(trie.root, 0);
+			while (!stack.isEmpty()) {
+				int depth = stack.topValue();
+				TrieNode node = stack.pop();
+				add(node, depth, node == trie.root);
+				if (node.terminal) {
+					addWord(trie.words, node.substr.wordIndex);
+				}
+				for (TrieNode ptr=node.firstChild; ptr != null; ptr=ptr.sibling) {
+					stack.push(ptr, depth + 1);
+				}
+			}
+			offHeapBytes = trie.words.offHeapBytes();
+		}
+	}
+
+	private void add(TrieNode node, int depth, boolean root) {
+		nodes++;
+		totalDepth += depth;
+		maxDepth = Math.max(maxDepth, depth);
+		nodeBytes += root ? NODE_BYTES : NODE_BYTES + INDEXES_BYTES;
+
+		int children = 0;
+		for (TrieNode ptr=node.firstChild; ptr != null; ptr=ptr.sibling) {
+			children++;
+		}
+		if (children == 0) {
+			leaves++;
+			return;
+		}
+		if (children >= childCounts.length) {
+			long[] newCounts = new long[Math.max(children + 1, childCounts.length * 2)];
+			System.arraycopy(childCounts, 0, newCounts, 0, childCounts.length);
+			childCounts = newCounts;
+		}
+		childCounts[children]++;
+
+		ChildIndex index = node.children;
+		if (index != null) {
+			indexedNodes++;
+			nodeBytes += index.sizeInBytes();
+		}
+	}
+
+	private void addWord(WordRegistry registry, int id) {
+		words++;
+		if (registry.isOffHeap()) {
+			wordChars += registry.length(id);
+			return;
+		}
+		String word = registry.get(id);
+		wordChars += word.length();
+		boolean latin = true;
+		for (int i=0; i < word.length() && latin; i++) {
+			latin = word.charAt(i) <= 0xff;
+		}
+		long chars = latin ? word.length() : 2L*word.length();
+		wordBytes += 24 + ((16 + chars + 7) & ~7L); //String object, and its array
+	}
+
+	/**
+	 * Returns the number of nodes, including the root.
+	 */
+	public long nodes() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the number of nodes with no children (the root too, if the trie is empty).
+	 */
+	public long leaves() {
+		return leaves;
+	}
+
+	/**
+	 * Returns the number of words, i.e. of terminal nodes.
+	 */
+	public long words() {
+		return words;
+	}
+
+	/**
+	 * Returns the number of nodes with a child index.
+	 */
+	public long indexedNodes() {
+		return indexedNodes;
+	}
+
+	/**
+	 * Returns the number of levels below the root of the deepest node.
+	 */
+	public int maxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Returns the average number of levels below the root of the nodes.
+	 */
+	public double averageDepth() {
+		return nodes == 0 ? 0 : (double)totalDepth / nodes;
+	}
+
+	/**
+	 * Returns the number of internal nodes with a given number of children.
+	 *
+	 * @param children Number of children, 1 or more
+	 * @return Number of nodes with that many children
+	 */
+	public long nodesWithChildren(int children) {
+		return children < childCounts.length ? childCounts[children] : 0;
+	}
+
+	/**
+	 * Returns the largest number of children of a node.
+	 */
+	public int maxChildren() {
+		for (int children=childCounts.length-1; children > 0; children--) {
+			if (childCounts[children] > 0) {
+				return children;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the estimated bytes of the nodes, with their Indexes and child indexes.
+	 */
+	public long nodeBytes() {
+		return nodeBytes;
+	}
+
+	/**
+	 * Returns the estimated bytes per node.
+	 */
+	public double bytesPerNode() {
+		return nodes == 0 ? 0 : (double)nodeBytes / nodes;
+	}
+
+	/**
+	 * Returns the total number of characters of the words.
+	 */
+	public long wordChars() {
+		return wordChars;
+	}
+
+	/**
+	 * Returns the estimated bytes of the words' Strings (0 if the words are off the heap).
+	 */
+	public long wordBytes() {
+		return wordBytes;
+	}
+
+	/**
+	 * Returns the bytes of direct memory holding the words, 0 if they are on the heap.
+	 */
+	public long offHeapBytes() {
+		return offHeapBytes;
+	}
+
+	/**
+	 * Returns the report, one figure per line, with the number of internal nodes for each
+	 * number of children.
+	 */
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		report.append("nodes: ").append(nodes).append(" (").append(leaves).append(" leaves, ")
+			.append(nodes - leaves).append(" internal, ").append(indexedNodes).append(" with a child index)\n");
+		report.append("words: ").append(words).append('\n');
+		report.append("depth: max ").append(maxDepth).append(", average ")
+			.append(String.format("%.2f", averageDepth())).append('\n');
+		report.append("children per internal node:");
+		for (int children=1; children < childCounts.length; children++) {
+			if (childCounts[children] > 0) {
+				report.append(' ').append(children).append(": ").append(childCounts[children]);
+			}
+		}
+		report.append('\n');
+		report.append("node bytes: ").append(nodeBytes).append(" (")
+			.append(String.format("%.1f", bytesPerNode())).append(" per node)\n");
+		if (offHeapBytes > 0) {
+			report.append("word bytes: ").append(offHeapBytes).append(" off the heap (").append(wordChars).append(" characters)\n");
+		} else {
+			report.append("word bytes: ").append(wordBytes).append(" (").append(wordChars).append(" characters)\n");
+		}
+		return report.toString();
+	}
+
+}
@@ -0,0 +1,404 @@
+package structures;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class keeps the words of a WordRegistry outside the Java heap, for dictionaries
+ * so large that tracing a String per word takes up much of the garbage collector's
+ * time. Everything that grows with the number of words is in direct byte buffers, which
+ * the collector does not look inside:
+ *
+ * - the characters, packed one word after another in segments: each word is a 2-byte
+ *   header (its length, with the top bit set if the word takes two bytes per character)
+ *   followed by its characters, one byte each if they are all below 256 and two bytes
+ *   each otherwise; no word crosses from one segment to the next. The first segment is
+ *   FIRST_SEGMENT_SIZE bytes and each next one twice the last, up to SEGMENT_SIZE, so a
+ *   small dictionary does not take a whole large segment
+ * - the address of each word by id (segment, position in it, and whether the word is
+ *   wide), 8 bytes per id, in chunks of OFFSET_CHUNK_SIZE ids
+ * - a hash table from word to id (open addressing with linear probing), each entry
+ *   being the word's hash code and its id plus one (0 for an empty entry, -1 for a
+ *   removed word)
+ *
+ * On the heap are only the arrays of segments and offset chunks, with one entry per
+ * SEGMENT_SIZE bytes or OFFSET_CHUNK_SIZE words. Reading characters (charAt, and
+ * mismatch for a run of them) goes straight to the arena; get builds a String, for the
+ * words a query returns. That makes
+ * long completion lists slower than with Strings on the heap, which the collector moves
+ * next to the nodes that refer to them, while the arena keeps the words in the order
+ * they were added (inserting words in sorted order keeps each list in one place).
+ *
+ * Direct buffers count against -XX:MaxDirectMemorySize (the maximum heap size unless
+ * set), and are freed when the arena is no longer reachable.
+ *
+ * Threads may read words by id (get, charAt, length) while one thread adds words, as in
+ * WordRegistry: an id's characters and address are written before the id is published.
+ * Words may also be placed by many threads at once (see place); the hash table and the
+ * space in the segments are handed out under this arena's lock.
+ *
+ */
+class WordArena {
+
+	/**
+	 * Largest number of bytes per segment, as a power of 2, and bytes of the first segment
+	 * (enough for the longest word, 2 + 2 * 32767 bytes).
+	 */
+	private static final int SEGMENT_BITS = 24, SEGMENT_SIZE = 1 << SEGMENT_BITS;
+	private static final int FIRST_SEGMENT_SIZE = 1 << 16;
+
+	/**
+	 * Ids per chunk of addresses, as a power of 2.
+	 */
+	private static final int OFFSET_CHUNK_BITS = 13, OFFSET_CHUNK_SIZE = 1 << OFFSET_CHUNK_BITS;
+
+	/**
+	 * Bit of the header of a word stored with two bytes per character, and the same bit
+	 * of its address.
+	 */
+	private static final int WIDE = 0x8000;
+	private static final long WIDE_ADDRESS = 1L << 62;
+
+	/**
+	 * Hash table entries holding no word, and the word of a removed id.
+	 */
+	private static final int EMPTY = 0, REMOVED = -1;
+
+	/**
+	 * Segments of characters. Only the last one has room left, from position on.
+	 */
+	private volatile ByteBuffer[] segments;
+	private int segmentCount;
+	private int position;
+
+	/**
+	 * Bytes of all segments.
+	 */
+	private long segmentBytes;
+
+	/**
+	 * Address of each id: segment number shifted left by SEGMENT_BITS, plus the position
+	 * of the word's header in the segment, plus WIDE_ADDRESS if the word is wide (a bit
+	 * above those an int cast of the segment number keeps).
+	 */
+	private volatile ByteBuffer[] offsets;
+
+	/**
+	 * Hash table of (hash code, id + 1) entries, its number of entries (a power of 2), and
+	 * the number of entries in use, including those of removed words.
+	 */
+	private ByteBuffer table;
+	private int tableSize;
+	private int tableUsed;
+
+	/**
+	 * Bytes of the segments taken up by words.
+	 */
+	private long wordBytes;
+
+	/**
+	 * Initializes an empty arena.
+	 */
+	WordArena() {
+		segments = new ByteBuffer[4];
+		offsets = new ByteBuffer[16];
+		tableSize = 1024;
+		table = ByteBuffer.allocateDirect(8 * tableSize);
+	}
+
+	/**
+	 * Makes sure there are address chunks for all ids below count. Called by one thread
+	 * at a time.
+	 */
+	void allocate(int count) {
+		int needed = (count + OFFSET_CHUNK_SIZE - 1) >>> OFFSET_CHUNK_BITS;
+		ByteBuffer[] chunks = offsets;
+		if (needed > chunks.length) {
+			ByteBuffer[] newChunks = new ByteBuffer[Math.max(needed, chunks.length * 2)];
+			System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+			chunks = newChunks;
+		}
+		for (int c=0; c < needed; c++) {
+			if (chunks[c] == null) {
+				chunks[c] = ByteBuffer.allocateDirect(8 * OFFSET_CHUNK_SIZE);
+			}
+		}
+		offsets = chunks;
+	}
+
+	/**
+	 * Stores a word for an id, and enters it in the hash table. The id must have an
+	 * address chunk (see allocate), and the word must not be in the arena. Different
+	 * threads may place words at the same time.
+	 *
+	 * @param id Id of the word
+	 * @param word Word to store
+	 * @throws IllegalArgumentException If the word is longer than 32767 characters
+	 */
+	void place(int id, String word) {
+		int length = word.length();
+		if (length > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("Word longer than " + Short.MAX_VALUE + " characters");
+		}
+		boolean wide = false;
+		for (int i=0; i < length && !wide; i++) {
+			wide = word.charAt(i) > 0xff;
+		}
+		int bytes = 2 + (wide ? 2 * length : length);
+		long address = reserveBytes(bytes);
+		ByteBuffer segment = segments[(int)(address >>> SEGMENT_BITS)];
+		int pos = (int)address & (SEGMENT_SIZE - 1);
+
+		segment.putShort(pos, (short)(wide ? length | WIDE : length));
+		if (wide) {
+			for (int i=0; i < length; i++) {
+				segment.putChar(pos + 2 + 2*i, word.charAt(i));
+			}
+		} else {
+			for (int i=0; i < length; i++) {
+				segment.put(pos + 2 + i, (byte)word.charAt(i));
+			}
+		}
+		offsets[id >>> OFFSET_CHUNK_BITS].putLong(8 * (id & (OFFSET_CHUNK_SIZE - 1)), wide ? address | WIDE_ADDRESS : address);
+		enter(word.hashCode(), id);
+	}
+
+	/**
+	 * Hands out room for a word in the last segment, starting a new one (twice as large as
+	 * the last, up to SEGMENT_SIZE) if it is full.
+	 *
+	 * @return Address of the room
+	 */
+	private synchronized long reserveBytes(int bytes) {
+		if (segmentCount == 0 || position + bytes > segments[segmentCount - 1].capacity()) {
+			ByteBuffer[] current = segments;
+			if (segmentCount == current.length) {
+				ByteBuffer[] newSegments = new ByteBuffer[current.length * 2];
+				System.arraycopy(current, 0, newSegments, 0, current.length);
+				current = newSegments;
+			}
+			int size = segmentCount == 0 ? FIRST_SEGMENT_SIZE : Math.min(2 * current[segmentCount - 1].capacity(), SEGMENT_SIZE);
+			current[segmentCount++] = ByteBuffer.allocateDirect(size);
+			segments = current;
+			segmentBytes += size;
+			position = 0;
+		}
+		long address = ((long)(segmentCount - 1) << SEGMENT_BITS) | position;
+		position += (bytes + 1) & ~1; //keeps headers and wide characters at even positions
+		wordBytes += bytes;
+		return address;
+	}
+
+	/**
+	 * Returns the address of an id's word.
+	 */
+	private long address(int id) {
+		return offsets[id >>> OFFSET_CHUNK_BITS].getLong(8 * (id & (OFFSET_CHUNK_SIZE - 1)));
+	}
+
+	/**
+	 * Returns the length of the word with a given id, without reading its characters.
+	 *
+	 * @param id Id of the word
+	 * @return Number of characters
+	 */
+	int length(int id) {
+		long address = address(id);
+		return segments[(int)(address >>> SEGMENT_BITS)].getShort((int)address & (SEGMENT_SIZE - 1)) & (WIDE - 1);
+	}
+
+	/**
+	 * Returns a character of the word with a given id, read in place.
+	 *
+	 * @param id Id of the word
+	 * @param index Index of the character in the word
+	 * @return Character at that index
+	 */
+	char charAt(int id, int index) {
+		long address = address(id);
+		ByteBuffer segment = segments[(int)(address >>> SEGMENT_BITS)];
+		int pos = (int)address & (SEGMENT_SIZE - 1);
+		if ((address & WIDE_ADDRESS) != 0) {
+			return segment.getChar(pos + 2 + 2*index);
+		}
+		return (char)(segment.get(pos + 2 + index) & 0xff);
+	}
+
+	/**
+	 * Compares characters of the word with a given id to those of another word, in place,
+	 * finding the word's segment, position and width once for all of them.
+	 *
+	 * @param id Id of the word
+	 * @param from Index of the first character to compare
+	 * @param to Index past the last character to compare (at most the length of either word)
+	 * @param word Word to compare with
+	 * @return First index from from on where the words differ, or to if they do not
+	 */
+	int mismatch(int id, int from, int to, String word) {
+		long address = address(id);
+		ByteBuffer segment = segments[(int)(address >>> SEGMENT_BITS)];
+		int start = ((int)address & (SEGMENT_SIZE - 1)) + 2;
+		int index = from;
+		if ((address & WIDE_ADDRESS) != 0) {
+			while (index < to && segment.getChar(start + 2*index) == word.charAt(index)) {
+				index++;
+			}
+		} else {
+			while (index < to && (char)(segment.get(start + index) & 0xff) == word.charAt(index)) {
+				index++;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the word with a given id, as a new String.
+	 *
+	 * @param id Id of the word
+	 * @return Word with that id
+	 */
+	String get(int id) {
+		long address = address(id);
+		ByteBuffer segment = segments[(int)(address >>> SEGMENT_BITS)];
+		int pos = (int)address & (SEGMENT_SIZE - 1);
+		int header = segment.getShort(pos) & 0xffff;
+		int length = header & (WIDE - 1);
+		if ((header & WIDE) != 0) {
+			char[] chars = new char[length];
+			for (int i=0; i < length; i++) {
+				chars[i] = segment.getChar(pos + 2 + 2*i);
+			}
+			return new String(chars);
+		}
+		byte[] bytes = new byte[length];
+		segment.get(pos + 2, bytes);
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Tells whether the word with a given id is the given word, comparing in place.
+	 */
+	private boolean matches(int id, String word) {
+		int length = word.length();
+		return length(id) == length && mismatch(id, 0, length, word) == length;
+	}
+
+	/**
+	 * Returns the id of a word.
+	 *
+	 * @param word Word to look up
+	 * @return Id of the word, or -1 if it is not in the arena (or was removed)
+	 */
+	synchronized int indexOf(String word) {
+		int entry = find(word);
+		return entry < 0 ? -1 : table.getInt(8*entry + 4) - 1;
+	}
+
+	/**
+	 * Takes a word out of the hash table. Its id keeps reading the word.
+	 *
+	 * @param word Word to remove
+	 * @return Id the word had, or -1 if it was not in the arena
+	 */
+	synchronized int remove(String word) {
+		int entry = find(word);
+		if (entry < 0) {
+			return -1;
+		}
+		int id = table.getInt(8*entry + 4) - 1;
+		table.putInt(8*entry + 4, REMOVED);
+		return id;
+	}
+
+	/**
+	 * Returns the hash table entry of a word, or -1 if it is not there.
+	 */
+	private int find(String word) {
+		int hash = word.hashCode();
+		int mask = tableSize - 1;
+		for (int entry=spread(hash) & mask; ; entry = (entry + 1) & mask) {
+			int idPlusOne = table.getInt(8*entry + 4);
+			if (idPlusOne == EMPTY) {
+				return -1;
+			}
+			if (idPlusOne != REMOVED && table.getInt(8*entry) == hash && matches(idPlusOne - 1, word)) {
+				return entry;
+			}
+		}
+	}
+
+	/**
+	 * Adds an id to the hash table, doubling the table once it is half full.
+	 */
+	private synchronized void enter(int hash, int id) {
+		if (2 * (tableUsed + 1) > tableSize) {
+			rehash(tableSize * 2);
+		}
+		put(table, tableSize, hash, id + 1);
+		tableUsed++;
+	}
+
+	/**
+	 * Moves the entries of the hash table to a new one, leaving out removed words.
+	 */
+	private void rehash(int newSize) {
+		ByteBuffer newTable = ByteBuffer.allocateDirect(8 * newSize);
+		int used = 0;
+		for (int entry=0; entry < tableSize; entry++) {
+			int idPlusOne = table.getInt(8*entry + 4);
+			if (idPlusOne != EMPTY && idPlusOne != REMOVED) {
+				put(newTable, newSize, table.getInt(8*entry), idPlusOne);
+				used++;
+			}
+		}
+		table = newTable;
+		tableSize = newSize;
+		tableUsed = used;
+	}
+
+	private static void put(ByteBuffer table, int size, int hash, int idPlusOne) {
+		int entry = spread(hash) & (size - 1);
+		while (table.getInt(8*entry + 4) != EMPTY) {
+			entry = (entry + 1) & (size - 1);
+		}
+		table.putInt(8*entry, hash);
+		table.putInt(8*entry + 4, idPlusOne);
+	}
+
+	/**
+	 * Mixes all bits of a hash code into the low ones, which pick the entry. String hash
+	 * codes of words that differ only in their last characters differ only in their low
+	 * bits, by small multiples of 31, which leaves runs of nearby entries that linear
+	 * probing has to walk; multiplying by an odd constant (the golden ratio's) scatters them.
+	 */
+	private static int spread(int hash) {
+		int h = hash * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Returns the bytes of direct memory this arena takes: its segments, address chunks
+	 * and hash table.
+	 *
+	 * @return Bytes off the heap
+	 */
+	synchronized long sizeInBytes() {
+		long chunks = 0;
+		for (ByteBuffer chunk : offsets) {
+			if (chunk != null) {
+				chunks++;
+			}
+		}
+		return segmentBytes + chunks * 8 * OFFSET_CHUNK_SIZE + 8L * tableSize;
+	}
+
+	/**
+	 * Returns the bytes of the segments taken up by words (headers and characters).
+	 *
+	 * @return Bytes of words
+	 */
+	synchronized long wordBytes() {
+		return wordBytes;
+	}
+
+}
@@ -0,0 +1,96 @@
+package structures;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class is an append-only store of words for ConcurrentTrie, which any number of
+ * threads can append to at once without locking. Each append takes the next id with a
+ * single atomic increment, and the word is written to that id's slot.
+ *
+ * Slots are kept in chunks that are never moved: the first chunk has FIRST_SIZE slots,
+ * and each next chunk twice as many as the one before, so that a few chunks cover any
+ * number of words and no chunk is ever copied to grow. A chunk is created by the first
+ * thread to need it (others that race it use the one that got in).
+ *
+ * A word is read by id with a plain array read, so a thread can only rely on reading a
+ * word whose id it got from a node that was linked into the trie after the append: the
+ * link is a compare-and-set, which makes everything written before it visible to
+ * threads that read the link.
+ *
+ */
+class WordLog {
+
+	/**
+	 * Number of slots of the first chunk, as a power of 2.
+	 */
+	private static final int FIRST_BITS = 10, FIRST_SIZE = 1 << FIRST_BITS;
+
+	/**
+	 * Number of chunks, and number of slots in all of them (a little under 2^31).
+	 */
+	private static final int CHUNKS = 21;
+	static final int CAPACITY = FIRST_SIZE * ((1 << CHUNKS) - 1);
+
+	/**
+	 * Chunk k holds the words with ids from FIRST_SIZE * (2^k - 1), FIRST_SIZE << k of them.
+	 */
+	private final AtomicReferenceArray<String[]> chunks = new AtomicReferenceArray<String[]>(CHUNKS);
+
+	/**
+	 * Next id to hand out.
+	 */
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * Adds a word at the end of the log.
+	 *
+	 * @param word Word to add
+	 * @return Id of the word
+	 * @throws IllegalStateException If the log has no room left
+	 */
+	int append(String word) {
+		int id = next.getAndIncrement();
+		if (id < 0 || id >= CAPACITY) {
+			next.set(CAPACITY); //keeps the counter from wrapping around to valid ids
+			throw new IllegalStateException("Word log is full (" + CAPACITY + " words)");
+		}
+		int chunk = chunkOf(id);
+		String[] slots = chunks.get(chunk);
+		if (slots == null) {
+			chunks.compareAndSet(chunk, null, new String[FIRST_SIZE << chunk]);
+			slots = chunks.get(chunk);
+		}
+		slots[id + FIRST_SIZE - (FIRST_SIZE << chunk)] = word;
+		return id;
+	}
+
+	/**
+	 * Returns the word with a given id (see the class comment for when it is visible).
+	 *
+	 * @param id Id of the word
+	 * @return The word
+	 */
+	String get(int id) {
+		int chunk = chunkOf(id);
+		return chunks.get(chunk)[id + FIRST_SIZE - (FIRST_SIZE << chunk)];
+	}
+
+	/**
+	 * Returns the number of ids handed out. Ids of inserts that lost a race to the same
+	 * word (see ConcurrentTrie.insertWord) are counted, though no node refers to them.
+	 *
+	 * @return Number of appends
+	 */
+	int size() {
+		return Math.min(next.get(), CAPACITY);
+	}
+
+	/**
+	 * Chunk of an id: id / FIRST_SIZE + 1 is between 2^k and 2^(k+1) - 1 for chunk k.
+	 */
+	private static int chunkOf(int id) {
+		return 31 - Integer.numberOfLeadingZeros((id >>> FIRST_BITS) + 1);
+	}
+
+}
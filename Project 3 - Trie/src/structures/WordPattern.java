@@ -0,0 +1,305 @@
+package structures;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * This class is a wildcard pattern over words, compiled into a small NFA for
+ * Trie.match. A pattern is a sequence of elements:
+ *
+ * c       - the character c (any character but the ones below, or one escaped with \)
+ * ?       - any one character
+ * [abc]   - one of the characters listed, which may include ranges like a-z
+ * [^abc]  - any one character not listed
+ * *       - any number of characters, including none
+ *
+ * The NFA has a state per element, plus a final state: state i means the first i
+ * elements have been matched. A character element moves state i to i+1 on a matching
+ * character; a star element loops on state i on any character, and also moves on to
+ * i+1 without one. Since there are at most MAX_ELEMENTS elements, a set of states is a
+ * long with a bit per state, and stepping it on a character is a few bit operations per
+ * state in the set.
+ *
+ * The NFA is turned into a DFA lazily, as a trie walk comes across sets of states: each
+ * set met gets a DFA state number, and the transitions out of it on ASCII characters are
+ * kept in a table once computed, so that most characters cost one array lookup however
+ * many NFA states are in the set. The empty set is DFA state DEAD: no word going on
+ * from there can match.
+ *
+ */
+class WordPattern {
+
+	/**
+	 * Maximum number of elements (runs of stars count as one), so that every state,
+	 * including the final one, has a bit in a long.
+	 */
+	static final int MAX_ELEMENTS = 63;
+
+	/**
+	 * DFA state of the empty set of NFA states.
+	 */
+	static final int DEAD = 0;
+
+	/**
+	 * Characters with a transition table (below this), and value for "not computed yet" in a table.
+	 */
+	private static final int TABLE_CHARS = 128, UNKNOWN = -1;
+
+	/**
+	 * Kinds of elements.
+	 */
+	private static final byte LITERAL = 0, ANY = 1, CLASS = 2, STAR = 3;
+
+	private byte[] kinds;
+
+	/**
+	 * Character of each LITERAL element.
+	 */
+	private char[] literals;
+
+	/**
+	 * For each CLASS element, the ranges of characters listed, as pairs (first, last),
+	 * and whether the class is negated.
+	 */
+	private char[][] ranges;
+	private boolean[] negated;
+
+	/**
+	 * Number of elements.
+	 */
+	private int size;
+
+	/**
+	 * Bits of the states of STAR elements.
+	 */
+	private long starStates;
+
+	/**
+	 * Characters of the LITERAL elements before the first element that is not one.
+	 */
+	private String literalPrefix;
+
+	/**
+	 * Set of NFA states of each DFA state met so far, the DFA state of each such set, and
+	 * the transition table of each DFA state (null until a transition is taken).
+	 */
+	private long[] dfaSets;
+	private int dfaSize;
+	private HashMap<Long,Integer> dfaStates;
+	private int[][] transitions;
+
+	/**
+	 * Compiles a pattern.
+	 *
+	 * @param pattern Pattern (already converted to lower case and trimmed)
+	 * @throws IllegalArgumentException If a [ is not closed, the pattern ends with \, or
+	 *         it has more than MAX_ELEMENTS elements
+	 */
+	WordPattern(String pattern) {
+		int length = pattern.length();
+		kinds = new byte[length];
+		literals = new char[length];
+		ranges = new char[length][];
+		negated = new boolean[length];
+
+		int pos = 0;
+		while (pos < length) {
+			char c = pattern.charAt(pos++);
+			if (c == '*') {
+				if (size > 0 && kinds[size-1] == STAR) {
+					continue; //runs of stars match the same as one
+				}
+				kinds[size] = STAR;
+			} else if (c == '?') {
+				kinds[size] = ANY;
+			} else if (c == '[') {
+				pos = parseClass(pattern, pos);
+			} else {
+				if (c == '\\') {
+					if (pos == length) {
+						throw new IllegalArgumentException("Pattern ends with \\: " + pattern);
+					}
+					c = pattern.charAt(pos++);
+				}
+				kinds[size] = LITERAL;
+				literals[size] = c;
+			}
+			size++;
+			if (size > MAX_ELEMENTS) {
+				throw new IllegalArgumentException("Pattern has more than " + MAX_ELEMENTS + " elements: " + pattern);
+			}
+		}
+
+		StringBuilder prefix = new StringBuilder();
+		for (int i=0; i < size; i++) {
+			if (kinds[i] == STAR) {
+				starStates |= 1L << i;
+			}
+		}
+		for (int i=0; i < size && kinds[i] == LITERAL; i++) {
+			prefix.append(literals[i]);
+		}
+		literalPrefix = prefix.toString();
+
+		dfaSets = new long[16];
+		transitions = new int[16][];
+		dfaStates = new HashMap<Long,Integer>();
+		dfaState(0L); //DEAD
+	}
+
+	/**
+	 * Parses the character class of element size, from just after its [.
+	 *
+	 * @return Index just after the closing ]
+	 */
+	private int parseClass(String pattern, int pos) {
+		int length = pattern.length();
+		if (pos < length && pattern.charAt(pos) == '^') {
+			negated[size] = true;
+			pos++;
+		}
+		StringBuilder pairs = new StringBuilder();
+		boolean first = true;
+		while (true) {
+			if (pos == length) {
+				throw new IllegalArgumentException("Pattern has [ with no ]: " + pattern);
+			}
+			char c = pattern.charAt(pos++);
+			if (c == ']' && !first) {
+				break;
+			}
+			first = false;
+			if (c == '\\' && pos < length) {
+				c = pattern.charAt(pos++);
+			}
+			char last = c;
+			if (pos + 1 < length && pattern.charAt(pos) == '-' && pattern.charAt(pos+1) != ']') {
+				last = pattern.charAt(pos+1);
+				pos += 2;
+			}
+			pairs.append(c).append(last);
+		}
+		kinds[size] = CLASS;
+		ranges[size] = pairs.toString().toCharArray();
+		return pos;
+	}
+
+	/**
+	 * Returns the characters every matching word starts with.
+	 *
+	 * @return Literal characters at the start of the pattern (may be empty)
+	 */
+	String literalPrefix() {
+		return literalPrefix;
+	}
+
+	/**
+	 * Returns the DFA state after the given number of characters of the literal prefix:
+	 * that of NFA state count, with the states reached from it without a character.
+	 *
+	 * @param count Number of characters, up to the length of the literal prefix
+	 * @return DFA state
+	 */
+	int afterLiteral(int count) {
+		return dfaState(closure(1L << count));
+	}
+
+	/**
+	 * Returns the DFA state after one more character.
+	 *
+	 * @param state DFA state before the character
+	 * @param c Character
+	 * @return DFA state after it, DEAD if no word going on this way can match
+	 */
+	int next(int state, char c) {
+		if (c >= TABLE_CHARS) {
+			return dfaState(step(dfaSets[state], c));
+		}
+		int[] table = transitions[state];
+		if (table == null) {
+			table = new int[TABLE_CHARS];
+			Arrays.fill(table, UNKNOWN);
+			transitions[state] = table;
+		}
+		int next = table[c];
+		if (next == UNKNOWN) {
+			next = dfaState(step(dfaSets[state], c));
+			table[c] = next;
+		}
+		return next;
+	}
+
+	/**
+	 * Tells whether a DFA state includes the final NFA state, i.e. the characters so far
+	 * match the whole pattern.
+	 *
+	 * @param state DFA state
+	 * @return True if the characters so far make a match
+	 */
+	boolean accepts(int state) {
+		return (dfaSets[state] & (1L << size)) != 0;
+	}
+
+	/**
+	 * Returns the DFA state of a set of NFA states, numbering the set if it is new.
+	 */
+	private int dfaState(long states) {
+		Integer state = dfaStates.get(states);
+		if (state != null) {
+			return state;
+		}
+		if (dfaSize == dfaSets.length) {
+			long[] newSets = new long[dfaSize * 2];
+			int[][] newTransitions = new int[dfaSize * 2][];
+			System.arraycopy(dfaSets, 0, newSets, 0, dfaSize);
+			System.arraycopy(transitions, 0, newTransitions, 0, dfaSize);
+			dfaSets = newSets;
+			transitions = newTransitions;
+		}
+		dfaSets[dfaSize] = states;
+		dfaStates.put(states, dfaSize);
+		return dfaSize++;
+	}
+
+	/**
+	 * Returns the set of NFA states after one more character.
+	 */
+	private long step(long states, char c) {
+		long next = 0;
+		for (long rest=states & ~(1L << size); rest != 0; rest &= rest - 1) {
+			int i = Long.numberOfTrailingZeros(rest);
+			if (kinds[i] == STAR) {
+				next |= 1L << i;
+			} else if (matches(i, c)) {
+				next |= 1L << (i+1);
+			}
+		}
+		return closure(next);
+	}
+
+	/**
+	 * Adds the states reached without a character: from a STAR state to the next one.
+	 */
+	private long closure(long states) {
+		for (long stars=states & starStates; stars != 0; stars &= stars - 1) {
+			states |= (stars & -stars) << 1;
+		}
+		return states;
+	}
+
+	private boolean matches(int i, char c) {
+		if (kinds[i] == LITERAL) {
+			return literals[i] == c;
+		}
+		if (kinds[i] == ANY) {
+			return true;
+		}
+		char[] pairs = ranges[i];
+		boolean listed = false;
+		for (int p=0; p < pairs.length && !listed; p += 2) {
+			listed = pairs[p] <= c && c <= pairs[p+1];
+		}
+		return listed != negated[i];
+	}
+
+}
@@ -0,0 +1,341 @@
+package structures;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class keeps the collection of words indexed by a trie, and hands out an
+ * integer id for each word. The id of a word is its position in the collection,
+ * which is what the wordIndex of an Indexes triplet refers to.
+ *
+ * Lookups go both ways: id -> word through the list, and word -> id through a
+ * hash map, so finding the id of a word (or finding out that it is already
+ * in the collection) does not need a scan over all the words.
+ *
+ * The list is kept in fixed-size chunks that are never moved once filled in, so
+ * threads reading words by id (get, charAt) need no locking while one thread
+ * registers new words. Registering itself must be done by one thread at a time.
+ *
+ * Removing a word only takes it out of the hash map: its slot keeps the word, so that
+ * readers still on trie nodes with the old id can read it. The slots of removed words
+ * are reclaimed by compact, which gives the remaining words new ids.
+ *
+ * For parallel builds, a range of ids can be reserved up front, and then filled in by
+ * many threads at once (each id by one thread), before being published all together.
+ *
+ * A registry can also keep its words off the heap, in a WordArena, instead of as a
+ * String per word in the chunks and hash map: the ids and methods are the same, but
+ * get builds a new String each time, while charAt reads the arena in place.
+ *
+ */
+class WordRegistry {
+
+	/**
+	 * Number of words per chunk, as a power of 2.
+	 */
+	private static final int CHUNK_BITS = 10, CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	/**
+	 * Words in order of registration; word with id i is at chunks[i / CHUNK_SIZE][i % CHUNK_SIZE].
+	 */
+	private volatile String[][] chunks;
+
+	/**
+	 * Number of registered words.
+	 */
+	private volatile int size;
+
+	/**
+	 * Id of each registered word.
+	 */
+	private ConcurrentHashMap<String,Integer> ids;
+
+	/**
+	 * One past the last reserved id (equal to size when nothing is reserved).
+	 */
+	private int reserved;
+
+	/**
+	 * Number of slots holding removed words.
+	 */
+	private int removed;
+
+	/**
+	 * Words off the heap, null if they are kept in chunks and ids.
+	 */
+	private final WordArena arena;
+
+	/**
+	 * Initializes an empty registry.
+	 */
+	WordRegistry() {
+		this(false);
+	}
+
+	/**
+	 * Initializes an empty registry, which keeps its words on or off the heap.
+	 *
+	 * @param offHeap True to keep the words in a WordArena
+	 */
+	WordRegistry(boolean offHeap) {
+		if (offHeap) {
+			arena = new WordArena();
+		} else {
+			arena = null;
+			chunks = new String[16][];
+			ids = new ConcurrentHashMap<String,Integer>();
+		}
+		size = 0;
+		reserved = 0;
+	}
+
+	/**
+	 * Tells whether the words are kept off the heap.
+	 *
+	 * @return True if the words are in a WordArena
+	 */
+	boolean isOffHeap() {
+		return arena != null;
+	}
+
+	/**
+	 * Returns the bytes of direct memory the words take (see WordArena.sizeInBytes).
+	 *
+	 * @return Bytes off the heap, 0 if the words are on the heap
+	 */
+	long offHeapBytes() {
+		return arena == null ? 0 : arena.sizeInBytes();
+	}
+
+	/**
+	 * Adds a word to the registry, unless it is already there.
+	 *
+	 * @param word Word to be added
+	 * @return Id of the word (the existing id if the word was already registered)
+	 */
+	int register(String word) {
+		int id = indexOf(word);
+		if (id != -1) {
+			return id;
+		}
+		int newId = size;
+		allocate(newId + 1);
+		place(newId, word);
+		reserved = newId + 1;
+		size = newId + 1; //publishes the word to readers
+		return newId;
+	}
+
+	/**
+	 * Reserves ids for words to be placed later, possibly by many threads at once. The
+	 * words are not visible through size until publish is called.
+	 *
+	 * @param count Number of ids to reserve
+	 * @return First reserved id; the ids run from there to one less than that plus count
+	 */
+	int reserve(int count) {
+		int firstId = reserved;
+		allocate(firstId + count);
+		reserved = firstId + count;
+		return firstId;
+	}
+
+	/**
+	 * Places a word at a reserved id. Different threads may place words at the same
+	 * time, as long as each id gets one word and each word one id.
+	 *
+	 * @param id Reserved id
+	 * @param word Word for that id (not already registered)
+	 */
+	void place(int id, String word) {
+		if (arena != null) {
+			arena.place(id, word);
+			return;
+		}
+		chunks[id >>> CHUNK_BITS][id & (CHUNK_SIZE-1)] = word;
+		ids.put(word, id);
+	}
+
+	/**
+	 * Publishes all reserved ids, once their words have been placed.
+	 */
+	void publish() {
+		size = reserved;
+	}
+
+	/**
+	 * Makes sure there are chunks for all ids below count.
+	 */
+	private void allocate(int count) {
+		if (arena != null) {
+			arena.allocate(count);
+			return;
+		}
+		int needed = (count + CHUNK_SIZE - 1) >>> CHUNK_BITS;
+		if (needed > chunks.length) {
+			String[][] newChunks = new String[Math.max(needed, chunks.length * 2)][];
+			System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+			chunks = newChunks;
+		}
+		for (int c = size >>> CHUNK_BITS; c < needed; c++) {
+			if (chunks[c] == null) {
+				chunks[c] = new String[CHUNK_SIZE];
+			}
+		}
+	}
+
+	/**
+	 * Returns the id of a word.
+	 *
+	 * @param word Word to look up
+	 * @return Id of the word, or -1 if it is not registered
+	 */
+	int indexOf(String word) {
+		if (arena != null) {
+			return arena.indexOf(word);
+		}
+		Integer id = ids.get(word);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Tells whether a word is registered.
+	 *
+	 * @param word Word to look up
+	 * @return True if word is registered; false otherwise
+	 */
+	boolean contains(String word) {
+		if (arena != null) {
+			return arena.indexOf(word) != -1;
+		}
+		return ids.containsKey(word);
+	}
+
+	/**
+	 * Returns the word with a given id.
+	 *
+	 * @param id Id of the word
+	 * @return Word with that id
+	 */
+	String get(int id) {
+		if (arena != null) {
+			return arena.get(id);
+		}
+		return chunks[id >>> CHUNK_BITS][id & (CHUNK_SIZE-1)];
+	}
+
+	/**
+	 * Returns a character of the word with a given id, without creating any substring.
+	 *
+	 * @param id Id of the word
+	 * @param index Index of the character in the word
+	 * @return Character at that index
+	 */
+	char charAt(int id, int index) {
+		if (arena != null) {
+			return arena.charAt(id, index);
+		}
+		return get(id).charAt(index);
+	}
+
+	/**
+	 * Compares characters of the word with a given id to those of another word, without
+	 * creating any substring. Off the heap, the word is found in the arena once for all
+	 * of the characters.
+	 *
+	 * @param id Id of the word
+	 * @param from Index of the first character to compare
+	 * @param to Index past the last character to compare (at most the length of either word)
+	 * @param word Word to compare with
+	 * @return First index from from on where the words differ, or to if they do not
+	 */
+	int mismatch(int id, int from, int to, String word) {
+		if (arena != null) {
+			return arena.mismatch(id, from, to, word);
+		}
+		String stored = get(id);
+		int index = from;
+		while (index < to && stored.charAt(index) == word.charAt(index)) {
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the length of the word with a given id, without creating a String for it
+	 * if the words are off the heap.
+	 *
+	 * @param id Id of the word
+	 * @return Number of characters in the word
+	 */
+	int length(int id) {
+		if (arena != null) {
+			return arena.length(id);
+		}
+		return get(id).length();
+	}
+
+	/**
+	 * Returns the number of slots, including those of removed words (all ids are below
+	 * this number).
+	 *
+	 * @return Number of slots
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Removes a word from the registry. Its id is not handed out again, and its slot
+	 * still reads the word until the registry is compacted.
+	 *
+	 * @param word Word to remove
+	 * @return Id the word had, or -1 if it was not registered
+	 */
+	int remove(String word) {
+		int id;
+		if (arena != null) {
+			id = arena.remove(word);
+		} else {
+			Integer removedId = ids.remove(word);
+			id = (removedId == null) ? -1 : removedId;
+		}
+		if (id == -1) {
+			return -1;
+		}
+		removed++;
+		return id;
+	}
+
+	/**
+	 * Returns the number of slots holding removed words.
+	 *
+	 * @return Number of removed words
+	 */
+	int removed() {
+		return removed;
+	}
+
+	/**
+	 * Builds a registry with only the words that have not been removed, in the same
+	 * order, so that their new ids run from 0 with no gaps, kept on or off the heap as in
+	 * this registry. This registry is not changed.
+	 *
+	 * @param newIds Filled in with the new id of each old id, -1 for removed words
+	 *        (must be at least size() long)
+	 * @return The compacted registry
+	 */
+	WordRegistry compact(int[] newIds) {
+		WordRegistry compacted = new WordRegistry(arena != null);
+		compacted.allocate(size - removed);
+		for (int id=0; id < size; id++) {
+			String word = get(id);
+			if (indexOf(word) == id) {
+				newIds[id] = compacted.register(word);
+			} else {
+				newIds[id] = -1;
+			}
+		}
+		return compacted;
+	}
+
+}